@@ -0,0 +1,46 @@
+package com.factory.buyogobackend.benchmark;
+
+import com.factory.buyogobackend.BuyogobackendApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// Boots the application without the web layer on its own in-memory H2 database, or with the prod
+// profile on a file-backed database in `directory`.
+// Properties are passed as command line arguments so they win over application.yml.
+public final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    public static ConfigurableApplicationContext start(String... extraProperties) {
+        return boot(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "--logging.level.root=WARN"
+        ), extraProperties) ;
+    }
+
+    public static ConfigurableApplicationContext startOnDisk(Path directory, String... extraProperties) {
+        return boot(List.of(
+                "--spring.profiles.active=prod",
+                "--events.db.path=" + directory.resolve("events").toAbsolutePath(),
+                "--logging.level.root=WARN"
+        ), extraProperties) ;
+    }
+
+    private static ConfigurableApplicationContext boot(List<String> baseArgs, String... extraProperties) {
+        List<String> args = new ArrayList<>(baseArgs) ;
+        for(String property : extraProperties){
+            args.add("--" + property) ;
+        }
+
+        return new SpringApplicationBuilder(BuyogobackendApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(String[]::new)) ;
+    }
+}
@@ -0,0 +1,68 @@
+package com.factory.buyogobackend.benchmark;
+
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.model.Event;
+import com.factory.buyogobackend.repository.jdbc.EventPartitions;
+import com.factory.buyogobackend.repository.keys.KeyDictionary;
+import com.factory.buyogobackend.repository.keys.KeyKind;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Bulk loader for the query benchmarks: machine keys and day partitions created, raw JDBC inserts, then the rollups are derived with one GROUP BY
+public final class BenchmarkData {
+
+    private static final int CHUNK = 10_000 ;
+
+    private BenchmarkData() {
+    }
+
+    public static void load(JdbcTemplate jdbc, KeyDictionary keyDictionary, EventPartitions eventPartitions,
+                            int rows, long seed, LocalDateTime origin) {
+
+        List<Object[]> machines = new ArrayList<>() ;
+        int[] machineKeys = new int[EventDataGenerator.MACHINES] ;
+        for(int m = 0; m < EventDataGenerator.MACHINES; m++){
+            machines.add(new Object[]{ EventDataGenerator.machineId(m),
+                    keyDictionary.intern(KeyKind.FACTORY, EventDataGenerator.factoryId(m)),
+                    keyDictionary.intern(KeyKind.LINE, EventDataGenerator.lineId(m)) }) ;
+            machineKeys[m] = keyDictionary.intern(KeyKind.MACHINE, EventDataGenerator.machineId(m)) ;
+        }
+        jdbc.batchUpdate("INSERT INTO machines (machine_id, factory_key, line_key) VALUES (?, ?, ?)", machines) ;
+
+        EventDataGenerator generator = new EventDataGenerator(seed, origin, 0) ;
+        Map<LocalDate, List<Object[]>> chunk = new TreeMap<>() ;
+        List<Object[]> ids = new ArrayList<>(CHUNK) ;
+        for(int i = 0; i < rows; i++){
+            EventRequestDTO e = generator.newEvent() ;
+            int machineKey = keyDictionary.keyOf(KeyKind.MACHINE, e.getMachineId()) ;
+            long hash = Event.hashPayload(e.getMachineId(), e.getEventTime(), e.getDurationMs(), e.getDefectCount()) ;
+            LocalDate day = EventPartitions.dayOf(e.getEventTime()) ;
+            chunk.computeIfAbsent(day, d -> new ArrayList<>()).add(new Object[]{
+                    e.getEventId(), machineKey, e.getEventTime(), origin, e.getDurationMs(), e.getDefectCount(), hash }) ;
+            ids.add(new Object[]{ e.getEventId(), day, origin, hash }) ;
+            if( ids.size() == CHUNK || i == rows - 1 ) {
+                eventPartitions.create(chunk.keySet()) ;
+                chunk.forEach((d, dayRows) -> jdbc.batchUpdate("INSERT INTO " + eventPartitions.table(d)
+                        + " (event_id, machine_key, event_time, received_time, duration_ms, defect_count, payload_hash)"
+                        + " VALUES (?, ?, ?, ?, ?, ?, ?)", dayRows)) ;
+                jdbc.batchUpdate("INSERT INTO event_days (event_id, event_day, received_time, payload_hash) VALUES (?, ?, ?, ?)", ids) ;
+                chunk.clear() ;
+                ids.clear() ;
+            }
+        }
+
+        jdbc.update("""
+            INSERT INTO machine_stats_buckets (machine_key, bucket_start, event_count, defect_sum)
+            SELECT machine_key, DATE_TRUNC(HOUR, event_time), COUNT(*),
+                   SUM(CASE WHEN defect_count = -1 THEN 0 ELSE defect_count END)
+              FROM events
+             GROUP BY machine_key, DATE_TRUNC(HOUR, event_time)
+        """) ;
+    }
+}
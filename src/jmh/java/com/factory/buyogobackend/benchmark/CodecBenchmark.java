@@ -0,0 +1,63 @@
+package com.factory.buyogobackend.benchmark;
+
+import com.factory.buyogobackend.codec.BinaryEventDecoder;
+import com.factory.buyogobackend.codec.BinaryEventEncoder;
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Decoding one batch body into EventRequestDTOs: the JSON array the controller binds today versus
+    BinaryEventFormat. No Spring context, no DB.
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"1000", "10000"})
+    public int batchSize ;
+
+    private ObjectReader jsonReader ;
+    private byte[] json ;
+    private byte[] binary ;
+
+    @Setup(Level.Trial)
+    public void encode() throws Exception {
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS) ;
+        jsonReader = mapper.readerFor(EventRequestDTO.class) ;
+
+        List<EventRequestDTO> batch = new EventDataGenerator(42, LocalDateTime.now(), batchSize).nextBatch(batchSize, 0, 0) ;
+        json = mapper.writeValueAsBytes(batch) ;
+        binary = BinaryEventEncoder.encode(batch) ;
+    }
+
+    @Benchmark
+    public void decodeJson(Blackhole bh) throws Exception {
+        var it = jsonReader.<EventRequestDTO>readValues(json) ;
+        while( it.hasNextValue() ){
+            bh.consume(it.nextValue()) ;
+        }
+    }
+
+    @Benchmark
+    public void decodeBinary(Blackhole bh) {
+        BinaryEventDecoder decoder = new BinaryEventDecoder(new ByteArrayInputStream(binary)) ;
+        while( decoder.hasNext() ){
+            bh.consume(decoder.next()) ;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.factory.buyogobackend.benchmark;
+
+import com.factory.buyogobackend.dto.EventRequestDTO;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+    Reproducible event generator: the same seed always yields the same sequence of batches.
+
+    Every event it hands out is remembered (up to `memory` events) so later batches can resend it
+    unchanged (duplicate) or with a different defectCount (update).
+*/
+public class EventDataGenerator {
+
+    public static final int MACHINES = 200 ;
+    public static final int LINES = 10 ;
+    public static final int FACTORIES = 2 ;
+
+    private final Random random ;
+    private final LocalDateTime origin ;
+    private final List<EventRequestDTO> sent = new ArrayList<>() ;
+    private final int memory ;
+    private long nextId ;
+
+    public EventDataGenerator(long seed, LocalDateTime origin, int memory) {
+        this.random = new Random(seed) ;
+        this.origin = origin ;
+        this.memory = memory ;
+    }
+
+    public List<EventRequestDTO> nextBatch(int size, double duplicateRatio, double updateRatio) {
+
+        List<EventRequestDTO> batch = new ArrayList<>(size) ;
+        for(int i = 0; i < size; i++){
+            double p = random.nextDouble() ;
+            if( !sent.isEmpty() && p < duplicateRatio ) {
+                batch.add(copy(sent.get(random.nextInt(sent.size())), 0)) ;
+            } else if( !sent.isEmpty() && p < duplicateRatio + updateRatio ) {
+                batch.add(copy(sent.get(random.nextInt(sent.size())), 1 + random.nextInt(5))) ;
+            } else {
+                EventRequestDTO dto = newEvent() ;
+                remember(dto) ;
+                batch.add(dto) ;
+            }
+        }
+        return batch ;
+    }
+
+    public EventRequestDTO newEvent() {
+        EventRequestDTO dto = new EventRequestDTO() ;
+        dto.setEventId("E-" + nextId++) ;
+        dto.setMachineId(machineId(random.nextInt(MACHINES))) ;
+        dto.setEventTime(origin.minusSeconds(random.nextInt(90 * 24 * 3600))) ;
+        dto.setDurationMs(random.nextInt(60_000)) ;
+        dto.setDefectCount(random.nextInt(20) == 0 ? -1 : random.nextInt(4)) ;
+        return dto ;
+    }
+
+    public static String machineId(int i) {
+        return "M-" + i ;
+    }
+
+    public static String lineId(int machine) {
+        return "L-" + (machine % LINES) ;
+    }
+
+    public static String factoryId(int machine) {
+        return "F-" + (machine % LINES) % FACTORIES ;
+    }
+
+    private void remember(EventRequestDTO dto) {
+        if( sent.size() < memory ) sent.add(dto) ;
+        else sent.set(random.nextInt(memory), dto) ;
+    }
+
+    private EventRequestDTO copy(EventRequestDTO source, int defectDelta) {
+        EventRequestDTO dto = new EventRequestDTO() ;
+        dto.setEventId(source.getEventId()) ;
+        dto.setMachineId(source.getMachineId()) ;
+        dto.setEventTime(source.getEventTime()) ;
+        dto.setDurationMs(source.getDurationMs()) ;
+        dto.setDefectCount(source.getDefectCount() + defectDelta) ;
+        return dto ;
+    }
+}
@@ -0,0 +1,81 @@
+package com.factory.buyogobackend.benchmark;
+
+import com.factory.buyogobackend.dto.BatchResponse;
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.factory.buyogobackend.service.EventService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+    EventService.processBatch end to end against embedded H2.
+
+    cold: every iteration starts from an empty events table.
+    warm: every iteration starts with WARM_ROWS events already stored, and duplicates / updates target them.
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class IngestionBenchmark {
+
+    private static final int WARM_ROWS = 100_000 ;
+    private static final long SEED = 42 ;
+
+    @Param({"100", "1000", "10000"})
+    public int batchSize ;
+
+    @Param({"0.0", "0.2"})
+    public double duplicateRatio ;
+
+    @Param({"0.0", "0.2"})
+    public double updateRatio ;
+
+    @Param({"cold", "warm"})
+    public String dbState ;
+
+    private ConfigurableApplicationContext context ;
+    private EventService eventService ;
+    private EventRepository eventRepository ;
+    private EventDataGenerator generator ;
+    private List<EventRequestDTO> batch ;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = BenchmarkApplication.start() ;
+        eventService = context.getBean(EventService.class) ;
+        eventRepository = context.getBean(EventRepository.class) ;
+    }
+
+    @Setup(Level.Iteration)
+    public void resetDatabase() {
+        eventRepository.deleteAll() ;
+        generator = new EventDataGenerator(SEED, LocalDateTime.now(), WARM_ROWS) ;
+        if( "warm".equals(dbState) ) {
+            for(int loaded = 0; loaded < WARM_ROWS; loaded += 10_000){
+                eventService.processBatch(generator.nextBatch(10_000, 0, 0)) ;
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void nextBatch() {
+        batch = generator.nextBatch(batchSize, duplicateRatio, updateRatio) ;
+    }
+
+    @Benchmark
+    public BatchResponse processBatch() {
+        return eventService.processBatch(batch) ;
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close() ;
+    }
+}
@@ -0,0 +1,130 @@
+package com.factory.buyogobackend.benchmark;
+
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+    Closed loop HTTP load test against a running instance: `clients` threads each send one request,
+    wait for the answer and send the next, for `seconds` after a warm up of the same length.
+
+        load-test <baseUrl> <batch|stats> <clients> <seconds> [batchSize]
+
+    Prints throughput and p50 / p99 / max latency of the measured period. Batch requests carry
+    `batchSize` fresh events of EventDataGenerator, ids prefixed per client so clients never collide.
+*/
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080" ;
+        String endpoint = args.length > 1 ? args[1] : "batch" ;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 1000 ;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30 ;
+        int batchSize = args.length > 4 ? Integer.parseInt(args[4]) : 100 ;
+
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS) ;
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build() ;
+
+        LocalDateTime origin = LocalDateTime.now() ;
+        long warmupEnd = System.nanoTime() + Duration.ofSeconds(seconds).toNanos() ;
+        long end = warmupEnd + Duration.ofSeconds(seconds).toNanos() ;
+
+        List<long[]> latencies = new ArrayList<>() ;
+        int[] counts = new int[clients] ;
+        AtomicLong errors = new AtomicLong() ;
+        AtomicReference<Exception> firstError = new AtomicReference<>() ;
+        CountDownLatch done = new CountDownLatch(clients) ;
+
+        for(int c = 0; c < clients; c++){
+            int client = c ;
+            long[] samples = new long[1 << 12] ;
+            latencies.add(samples) ;
+            Thread t = new Thread(() -> {
+                EventDataGenerator generator = new EventDataGenerator(client, origin, 0) ;
+                try {
+                    while( System.nanoTime() < end ){
+                        HttpRequest request = "stats".equals(endpoint)
+                                ? statsRequest(baseUrl, client, origin)
+                                : batchRequest(baseUrl, mapper, generator, client, batchSize) ;
+                        long started = System.nanoTime() ;
+                        HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding()) ;
+                        long elapsed = System.nanoTime() - started ;
+                        if( response.statusCode() != 200 ) errors.incrementAndGet() ;
+                        if( started >= warmupEnd && counts[client] < samples.length ) samples[counts[client]++] = elapsed ;
+                    }
+                } catch (Exception e) {
+                    errors.incrementAndGet() ;
+                    firstError.compareAndSet(null, e) ;
+                } finally {
+                    done.countDown() ;
+                }
+            }, "load-client-" + client) ;
+            t.setDaemon(true) ;
+            t.start() ;
+        }
+        done.await() ;
+        if( firstError.get() != null ) {
+            System.err.println("client stopped after: " + firstError.get()) ;
+        }
+
+        long[] all = new long[Arrays.stream(counts).sum()] ;
+        int at = 0 ;
+        for(int c = 0; c < clients; c++){
+            System.arraycopy(latencies.get(c), 0, all, at, counts[c]) ;
+            at += counts[c] ;
+        }
+        Arrays.sort(all) ;
+
+        System.out.printf("%s  clients=%d  requests=%d  errors=%d  throughput=%.1f req/s  p50=%.1f ms  p99=%.1f ms  max=%.1f ms%n",
+                endpoint, clients, all.length, errors.get(), all.length / (double) seconds,
+                percentile(all, 0.50), percentile(all, 0.99), all.length == 0 ? 0.0 : all[all.length - 1] / 1e6) ;
+    }
+
+    private static HttpRequest batchRequest(String baseUrl, ObjectMapper mapper, EventDataGenerator generator,
+                                            int client, int batchSize) throws Exception {
+        List<EventRequestDTO> batch = new ArrayList<>(batchSize) ;
+        for(int i = 0; i < batchSize; i++){
+            EventRequestDTO e = generator.newEvent() ;
+            e.setEventId("L" + client + "-" + e.getEventId()) ;
+            batch.add(e) ;
+        }
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/events/batch"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(batch)))
+                .build() ;
+    }
+
+    private static HttpRequest statsRequest(String baseUrl, int client, LocalDateTime origin) {
+        String machineId = EventDataGenerator.machineId(client % EventDataGenerator.MACHINES) ;
+        // a window that moves with every request, so the stats cache does not answer all of them
+        LocalDateTime end = origin.minusMinutes(System.nanoTime() % 600).withNano(0) ;
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/stats?machineId=" + machineId
+                        + "&start=" + end.minusDays(1) + "&end=" + end))
+                .GET()
+                .build() ;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if( sorted.length == 0 ) return 0.0 ;
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)] / 1e6 ;
+    }
+}
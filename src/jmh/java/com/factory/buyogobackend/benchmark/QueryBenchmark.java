@@ -0,0 +1,87 @@
+package com.factory.buyogobackend.benchmark;
+
+import com.factory.buyogobackend.dto.QueryStatsResponse;
+import com.factory.buyogobackend.dto.TopDefectLineResponse;
+import com.factory.buyogobackend.repository.hot.HotEventTier;
+import com.factory.buyogobackend.repository.jdbc.EventPartitions;
+import com.factory.buyogobackend.repository.keys.KeyDictionary;
+import com.factory.buyogobackend.service.DefectLeaderboardService;
+import com.factory.buyogobackend.service.EventService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+    getStats / getTopDefectLines over `rows` events spread across 90 days, 200 machines, 10 lines, 2 factories.
+
+    Windows are not hour aligned so both the rollup buckets and the raw edges are exercised.
+    The stats cache is off unless statsCacheEntries > 0; machines rotate so repeated calls are not trivially cached.
+    hotTierHours = 0 turns the in-memory hot tier off; with 72 the 1h and 24h windows are answered by it.
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class QueryBenchmark {
+
+    private static final long SEED = 7 ;
+
+    @Param({"1000000", "10000000"})
+    public int rows ;
+
+    @Param({"1", "24", "720"})
+    public int windowHours ;
+
+    @Param({"0"})
+    public int statsCacheEntries ;
+
+    @Param({"0", "72"})
+    public int hotTierHours ;
+
+    private ConfigurableApplicationContext context ;
+    private EventService eventService ;
+    private LocalDateTime end ;
+    private LocalDateTime start ;
+    private int machine ;
+
+    @Setup(Level.Trial)
+    public void loadData() {
+        context = BenchmarkApplication.start("events.stats-cache.max-entries=" + statsCacheEntries,
+                "events.hot-tier.hours=" + hotTierHours) ;
+        eventService = context.getBean(EventService.class) ;
+
+        LocalDateTime origin = LocalDateTime.now().truncatedTo(ChronoUnit.DAYS) ;
+        BenchmarkData.load(context.getBean(JdbcTemplate.class), context.getBean(KeyDictionary.class),
+                context.getBean(EventPartitions.class), rows, SEED, origin) ;
+        context.getBean(DefectLeaderboardService.class).refreshMachines() ;
+        // the rows bypassed processBatch, so the tier loaded at startup saw an empty table
+        HotEventTier hotEventTier = context.getBean(HotEventTier.class) ;
+        if( hotEventTier.isEnabled() ) hotEventTier.load() ;
+
+        end = origin.minusDays(1).plusMinutes(17) ;
+        start = end.minusHours(windowHours).plusMinutes(13) ;
+    }
+
+    @Benchmark
+    public QueryStatsResponse getStats() {
+        machine = (machine + 1) % EventDataGenerator.MACHINES ;
+        return eventService.getStats(EventDataGenerator.machineId(machine), start, end) ;
+    }
+
+    @Benchmark
+    public List<TopDefectLineResponse> getTopDefectLines() {
+        return eventService.getTopDefectLines("F-0", start, end, 10) ;
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close() ;
+    }
+}
@@ -0,0 +1,69 @@
+package com.factory.buyogobackend.benchmark;
+
+import com.factory.buyogobackend.dto.BatchResponse;
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.service.EventService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Sustained ingest rate: batches of BATCH_SIZE new events, back to back, into a table that keeps
+    growing over the whole trial (it is never reset between iterations).
+
+    mem: default profile, in-memory H2.  file: prod profile, file-backed MVStore in a temp directory.
+    Events per second = score * BATCH_SIZE.
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SustainedIngestBenchmark {
+
+    private static final int BATCH_SIZE = 1000 ;
+
+    @Param({"mem", "file"})
+    public String storage ;
+
+    private Path directory ;
+    private ConfigurableApplicationContext context ;
+    private EventService eventService ;
+    private EventDataGenerator generator ;
+    private List<EventRequestDTO> batch ;
+
+    @Setup(Level.Trial)
+    public void startApplication() throws Exception {
+        if( "file".equals(storage) ) {
+            directory = Files.createTempDirectory("events-bench") ;
+            context = BenchmarkApplication.startOnDisk(directory) ;
+        } else {
+            context = BenchmarkApplication.start() ;
+        }
+        eventService = context.getBean(EventService.class) ;
+        generator = new EventDataGenerator(42, LocalDateTime.now(), BATCH_SIZE) ;
+    }
+
+    @Setup(Level.Invocation)
+    public void nextBatch() {
+        batch = generator.nextBatch(BATCH_SIZE, 0, 0) ;
+    }
+
+    @Benchmark
+    public BatchResponse ingest() {
+        return eventService.processBatch(batch) ;
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() throws Exception {
+        context.close() ;
+        if( directory != null ) FileSystemUtils.deleteRecursively(directory) ;
+    }
+}
@@ -0,0 +1,60 @@
+package com.factory.buyogobackend.service;
+
+import com.factory.buyogobackend.benchmark.EventDataGenerator;
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.dto.Rejection;
+import com.factory.buyogobackend.model.Event;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// isValid / samePayLoad in isolation, no Spring context or database (same package for the package-private methods)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidationBenchmark {
+
+    private static final int EVENTS = 1024 ;
+
+    private final EventService eventService = new EventService() ;
+    private final List<Rejection> rejections = new ArrayList<>() ;
+
+    private EventRequestDTO[] dtos ;
+    private Event[] events ;
+    private Event[] copies ;
+    private LocalDateTime now ;
+    private int i ;
+
+    @Setup
+    public void generate() {
+        now = LocalDateTime.now() ;
+        EventDataGenerator generator = new EventDataGenerator(1, now, 0) ;
+        dtos = new EventRequestDTO[EVENTS] ;
+        events = new Event[EVENTS] ;
+        copies = new Event[EVENTS] ;
+        for(int k = 0; k < EVENTS; k++){
+            dtos[k] = generator.newEvent() ;
+            events[k] = eventService.maptoEvent(dtos[k], now) ;
+            copies[k] = eventService.maptoEvent(dtos[k], now) ;
+        }
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        rejections.clear() ;
+        i = (i + 1) & (EVENTS - 1) ;
+        return eventService.isValid(dtos[i], rejections, now) ;
+    }
+
+    @Benchmark
+    public boolean samePayLoad() {
+        i = (i + 1) & (EVENTS - 1) ;
+        return eventService.samePayLoad(events[i], copies[i]) ;
+    }
+}
@@ -0,0 +1,168 @@
+package com.factory.buyogobackend.codec;
+
+import com.factory.buyogobackend.dto.EventRequestDTO;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/*
+    Reads a BinaryEventFormat body one event at a time straight from the request stream.
+
+    The only allocations per event are the DTO and its eventId; machineIds are decoded once into the
+    dictionary and shared by every event that references them. Throws FormatException on a
+    malformed or truncated body and UncheckedIOException when the stream fails.
+*/
+public class BinaryEventDecoder implements Iterator<EventRequestDTO> {
+
+    // eventIds and machineIds are short, a longer length is a corrupt body
+    static final int MAX_STRING_BYTES = 1 << 16 ;
+
+    private final InputStream in ;
+    private final byte[] buf = new byte[8192] ;
+    private int pos ;
+    private int limit ;
+
+    private final List<String> machines = new ArrayList<>() ;
+    private boolean started ;
+    private EventRequestDTO next ;
+
+    public BinaryEventDecoder(InputStream in) {
+        this.in = in ;
+    }
+
+    @Override
+    public boolean hasNext() {
+
+        if( next != null ) return true ;
+        if( !started ) {
+            readMagic() ;
+            started = true ;
+        }
+
+        while( true ){
+            int tag = readTag() ;
+            switch (tag) {
+                case -1 -> {
+                    return false ;
+                }
+                case BinaryEventFormat.TAG_MACHINE -> machines.add(readString(readLength())) ;
+                case BinaryEventFormat.TAG_EVENT, BinaryEventFormat.TAG_EVENT_NO_TIME -> {
+                    next = readEvent(tag == BinaryEventFormat.TAG_EVENT) ;
+                    return true ;
+                }
+                default -> throw new BinaryEventFormat.FormatException("unknown entry tag " + tag) ;
+            }
+        }
+    }
+
+    @Override
+    public EventRequestDTO next() {
+        if( !hasNext() ) throw new NoSuchElementException() ;
+        EventRequestDTO event = next ;
+        next = null ;
+        return event ;
+    }
+
+    private EventRequestDTO readEvent(boolean withTime) {
+
+        EventRequestDTO event = new EventRequestDTO() ;
+        int idLength = readLength() ;
+        event.setEventId(idLength == 0 ? null : readString(idLength - 1)) ;
+
+        long machine = readVarLong() ;
+        if( machine > machines.size() ) {
+            throw new BinaryEventFormat.FormatException("machine index " + machine + " not in dictionary") ;
+        }
+        event.setMachineId(machine == 0 ? null : machines.get((int) machine - 1)) ;
+
+        if( withTime ) event.setEventTime(BinaryEventFormat.fromEpochMillis(unzigzag(readVarLong()))) ;
+        event.setDurationMs(readZigzagInt("durationMs")) ;
+        event.setDefectCount(readZigzagInt("defectCount")) ;
+        return event ;
+    }
+
+    // a value outside the int range is malformed, not wrapped into some other valid looking int
+    private int readZigzagInt(String field) {
+        long value = unzigzag(readVarLong()) ;
+        if( value != (int) value ) throw new BinaryEventFormat.FormatException(field + " out of int range: " + value) ;
+        return (int) value ;
+    }
+
+    private void readMagic() {
+        byte[] magic = new byte[BinaryEventFormat.MAGIC.length] ;
+        for(int i = 0; i < magic.length; i++){
+            magic[i] = (byte) readByte() ;
+        }
+        if( !Arrays.equals(magic, BinaryEventFormat.MAGIC) ) {
+            throw new BinaryEventFormat.FormatException("not a binary event body") ;
+        }
+    }
+
+    // -1 at a clean end of the body
+    private int readTag() {
+        if( pos == limit && !fill() ) return -1 ;
+        return buf[pos++] & 0xFF ;
+    }
+
+    private int readByte() {
+        if( pos == limit && !fill() ) throw new BinaryEventFormat.FormatException("truncated body") ;
+        return buf[pos++] & 0xFF ;
+    }
+
+    private long readVarLong() {
+        long value = 0 ;
+        for(int shift = 0; shift < 64; shift += 7){
+            int b = readByte() ;
+            value |= (long) (b & 0x7F) << shift ;
+            if( (b & 0x80) == 0 ) return value ;
+        }
+        throw new BinaryEventFormat.FormatException("varint too long") ;
+    }
+
+    private int readLength() {
+        long length = readVarLong() ;
+        if( length > MAX_STRING_BYTES + 1 ) throw new BinaryEventFormat.FormatException("string too long") ;
+        return (int) length ;
+    }
+
+    private String readString(int length) {
+        if( limit - pos >= length ) {
+            String value = new String(buf, pos, length, StandardCharsets.UTF_8) ;
+            pos += length ;
+            return value ;
+        }
+        byte[] bytes = new byte[length] ;
+        int at = 0 ;
+        while( at < length ){
+            if( pos == limit && !fill() ) throw new BinaryEventFormat.FormatException("truncated body") ;
+            int n = Math.min(length - at, limit - pos) ;
+            System.arraycopy(buf, pos, bytes, at, n) ;
+            pos += n ;
+            at += n ;
+        }
+        return new String(bytes, StandardCharsets.UTF_8) ;
+    }
+
+    private boolean fill() {
+        try {
+            int n = in.read(buf, 0, buf.length) ;
+            if( n <= 0 ) return false ;
+            pos = 0 ;
+            limit = n ;
+            return true ;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e) ;
+        }
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1) ;
+    }
+}
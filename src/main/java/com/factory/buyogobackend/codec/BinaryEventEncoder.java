@@ -0,0 +1,136 @@
+package com.factory.buyogobackend.codec;
+
+import com.factory.buyogobackend.dto.EventRequestDTO;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Client side writer of BinaryEventFormat, for gateways that post batches to /events/batch.
+    Depends on the JDK only (EventRequestDTO is accepted for convenience).
+
+        byte[] body = BinaryEventEncoder.encode(events) ;
+
+    or, streaming, one encoder per request body:
+
+        BinaryEventEncoder encoder = new BinaryEventEncoder(out) ;
+        encoder.write(eventId, machineId, eventTime, durationMs, defectCount) ;
+        encoder.flush() ;
+
+    Not thread safe.
+*/
+public class BinaryEventEncoder {
+
+    private final OutputStream out ;
+    private final Map<String, Integer> machines = new HashMap<>() ;
+    private final byte[] buf = new byte[8192] ;
+    private int pos ;
+
+    public BinaryEventEncoder(OutputStream out) {
+        this.out = out ;
+        put(BinaryEventFormat.MAGIC, 0, BinaryEventFormat.MAGIC.length) ;
+    }
+
+    public static byte[] encode(List<EventRequestDTO> events) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + events.size() * 32) ;
+        BinaryEventEncoder encoder = new BinaryEventEncoder(out) ;
+        events.forEach(encoder::write) ;
+        encoder.flush() ;
+        return out.toByteArray() ;
+    }
+
+    public void write(EventRequestDTO event) {
+        write(event.getEventId(), event.getMachineId(), event.getEventTime(), event.getDurationMs(), event.getDefectCount()) ;
+    }
+
+    public void write(String eventId, String machineId, LocalDateTime eventTime, int durationMs, int defectCount) {
+
+        int machine = 0 ;
+        if( machineId != null ) {
+            Integer index = machines.get(machineId) ;
+            if( index == null ) {
+                index = machines.size() ;
+                machines.put(machineId, index) ;
+                putByte(BinaryEventFormat.TAG_MACHINE) ;
+                putString(machineId, false) ;
+            }
+            machine = index + 1 ;
+        }
+
+        putByte(eventTime == null ? BinaryEventFormat.TAG_EVENT_NO_TIME : BinaryEventFormat.TAG_EVENT) ;
+        putString(eventId, true) ;
+        putVarLong(machine) ;
+        if( eventTime != null ) putVarLong(zigzag(BinaryEventFormat.toEpochMillis(eventTime))) ;
+        putVarLong(zigzag(durationMs)) ;
+        putVarLong(zigzag(defectCount)) ;
+    }
+
+    public void flush() {
+        drain() ;
+        try {
+            out.flush() ;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e) ;
+        }
+    }
+
+    private void putString(String value, boolean nullable) {
+        if( value == null ) {
+            putVarLong(0) ;
+            return ;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8) ;
+        putVarLong(nullable ? bytes.length + 1L : bytes.length) ;
+        put(bytes, 0, bytes.length) ;
+    }
+
+    private void putVarLong(long value) {
+        if( buf.length - pos < 10 ) drain() ;
+        while( (value & ~0x7FL) != 0 ){
+            buf[pos++] = (byte) ((value & 0x7F) | 0x80) ;
+            value >>>= 7 ;
+        }
+        buf[pos++] = (byte) value ;
+    }
+
+    private void putByte(int value) {
+        if( pos == buf.length ) drain() ;
+        buf[pos++] = (byte) value ;
+    }
+
+    private void put(byte[] bytes, int offset, int length) {
+        if( buf.length - pos < length ) {
+            drain() ;
+            if( length > buf.length ) {
+                write(bytes, offset, length) ;
+                return ;
+            }
+        }
+        System.arraycopy(bytes, offset, buf, pos, length) ;
+        pos += length ;
+    }
+
+    private void drain() {
+        write(buf, 0, pos) ;
+        pos = 0 ;
+    }
+
+    private void write(byte[] bytes, int offset, int length) {
+        try {
+            out.write(bytes, offset, length) ;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e) ;
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63) ;
+    }
+}
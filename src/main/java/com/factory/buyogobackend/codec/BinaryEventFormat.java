@@ -0,0 +1,56 @@
+package com.factory.buyogobackend.codec;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/*
+    Compact binary batch body for POST /events/batch, content type application/x-machine-events.
+
+        body    = magic *entry
+        magic   = 'M' 'E' 'V' 0x01
+        entry   = 0x01 string                              ; next machineId of the dictionary
+                | 0x02 eventId machine time duration defects
+                | 0x03 eventId machine duration defects    ; eventTime null
+        eventId = uvarint(length + 1) utf8                 ; length 0 = null
+        machine = uvarint(dictionary index + 1)            ; 0 = null
+        time    = zigzag varint, epoch millis of the LocalDateTime read as UTC (no zone is applied)
+        duration, defects = zigzag varint
+        string  = uvarint(length) utf8
+
+    Varints are little endian base 128. A machineId is sent once per body, the first time it is
+    used, so an encoder can write a batch in a single pass. duration and defects outside the int range
+    are a FormatException.
+
+    eventTime is carried at millisecond precision, while JSON bodies keep microseconds. An event first
+    sent as JSON with a sub-millisecond eventTime and retransmitted in this format has a different
+    payload, so it is counted as an update (the eventTime truncated to the millisecond), not deduped.
+*/
+public final class BinaryEventFormat {
+
+    public static final String MEDIA_TYPE = "application/x-machine-events" ;
+
+    static final byte[] MAGIC = { 'M', 'E', 'V', 0x01 } ;
+
+    static final int TAG_MACHINE = 0x01 ;
+    static final int TAG_EVENT = 0x02 ;
+    static final int TAG_EVENT_NO_TIME = 0x03 ;
+
+    private BinaryEventFormat() {
+    }
+
+    static long toEpochMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli() ;
+    }
+
+    static LocalDateTime fromEpochMillis(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC) ;
+    }
+
+    // malformed or truncated body
+    public static class FormatException extends RuntimeException {
+        public FormatException(String message) {
+            super(message) ;
+        }
+    }
+}
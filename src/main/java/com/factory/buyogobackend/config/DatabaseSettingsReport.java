@@ -0,0 +1,62 @@
+package com.factory.buyogobackend.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Logs the database settings that are actually in effect once the application is up, read back
+    from H2 rather than from the configuration, so a URL setting H2 ignored shows up here.
+
+    The default profile runs on in-memory H2 and loses every event on restart; the prod profile
+    (application-prod.yml) uses a file-backed MVStore.
+*/
+@Slf4j
+@Component
+public class DatabaseSettingsReport {
+
+    private static final List<String> H2_SETTINGS = List.of(
+            "MV_STORE", "CACHE_SIZE", "info.PAGE_SIZE", "WRITE_DELAY", "info.FILE_SIZE") ;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:none}")
+    private String hibernateBatchSize ;
+
+    @Value("${spring.jpa.properties.hibernate.order_inserts:false}")
+    private boolean orderInserts ;
+
+    @Value("${spring.jpa.properties.hibernate.order_updates:false}")
+    private boolean orderUpdates ;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate ;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void report() {
+
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) con -> con.getMetaData().getURL()) ;
+        Map<String, String> settings = settings() ;
+
+        log.info("database: {}, h2 settings: {}, hibernate jdbc batch_size: {}, order_inserts: {}, order_updates: {}",
+                database, settings, hibernateBatchSize, orderInserts, orderUpdates);
+        if( database != null && database.startsWith("jdbc:h2:mem:") ) {
+            log.warn("in-memory database, events are lost on restart (run with the prod profile for a file-backed database)");
+        }
+    }
+
+    public Map<String, String> settings() {
+        Map<String, String> settings = new LinkedHashMap<>() ;
+        jdbcTemplate.query("SELECT SETTING_NAME, SETTING_VALUE FROM INFORMATION_SCHEMA.SETTINGS WHERE SETTING_NAME = ANY(?)",
+                rs -> { settings.put(rs.getString(1), rs.getString(2)) ; },
+                (Object) H2_SETTINGS.toArray()) ;
+        return settings ;
+    }
+}
@@ -0,0 +1,42 @@
+package com.factory.buyogobackend.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/*
+    Logs how requests are executed once the application is up.
+
+    spring.threads.virtual.enabled runs every Tomcat request on its own virtual thread instead of the
+    platform pool (server.tomcat.threads.max), which stays the default. In both modes the JDBC pool is
+    sized on its own (spring.datasource.hikari.maximum-pool-size) and is what bounds concurrent DB work.
+*/
+@Slf4j
+@Component
+public class ExecutionModeReport {
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads ;
+
+    @Value("${server.tomcat.threads.max:200}")
+    private int tomcatMaxThreads ;
+
+    @Autowired
+    private DataSource dataSource ;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void report() {
+
+        String pool = dataSource instanceof HikariDataSource hikari
+                ? String.valueOf(hikari.getMaximumPoolSize())
+                : dataSource.getClass().getSimpleName() ;
+        log.info("request threads: {}, JDBC pool max size: {}",
+                virtualThreads ? "virtual" : "platform (max " + tomcatMaxThreads + ")", pool);
+    }
+}
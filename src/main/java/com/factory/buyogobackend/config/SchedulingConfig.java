@@ -0,0 +1,10 @@
+package com.factory.buyogobackend.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// runs the @Scheduled jobs (retention)
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
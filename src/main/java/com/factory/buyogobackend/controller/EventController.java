@@ -1,15 +1,38 @@
 package com.factory.buyogobackend.controller;
 
+import com.factory.buyogobackend.codec.BinaryEventFormat;
 import com.factory.buyogobackend.dto.EventRequestDTO;
 import com.factory.buyogobackend.dto.BatchResponse;
+import com.factory.buyogobackend.dto.LatenessResponse;
+import com.factory.buyogobackend.dto.BatchStatusResponse;
+import com.factory.buyogobackend.dto.CacheStatsResponse;
 import com.factory.buyogobackend.dto.QueryStatsResponse;
+import com.factory.buyogobackend.dto.RetentionResponse;
+import com.factory.buyogobackend.dto.StatsSeriesPoint;
 import com.factory.buyogobackend.dto.TopDefectLineResponse;
+import com.factory.buyogobackend.dto.WatermarkResponse;
+import com.factory.buyogobackend.service.AsyncBatchIngestor;
+import com.factory.buyogobackend.service.BatchReplayCache;
 import com.factory.buyogobackend.service.EventService;
+import com.factory.buyogobackend.service.EventStreamIngestor;
+import com.factory.buyogobackend.service.EventWatermarks;
+import com.factory.buyogobackend.service.LiveStatsHub;
+import com.factory.buyogobackend.service.MachineDirectory;
+import com.factory.buyogobackend.service.RetentionService;
+import com.factory.buyogobackend.service.StatsSeriesService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -19,14 +42,122 @@ public class EventController {
     @Autowired
     private EventService eventService;
 
+    @Autowired
+    private EventStreamIngestor eventStreamIngestor;
+
+    @Autowired
+    private AsyncBatchIngestor asyncBatchIngestor;
+
+    @Autowired
+    private BatchReplayCache batchReplayCache;
+
+    @Autowired
+    private EventWatermarks eventWatermarks;
+
+    @Autowired
+    private RetentionService retentionService;
+
+    @Autowired
+    private StatsSeriesService statsSeriesService;
+
+    @Autowired
+    private LiveStatsHub liveStatsHub;
+
+    @Autowired
+    private MachineDirectory machineDirectory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // an Idempotency-Key seen before answers with the stored response, see BatchReplayCache
     @PostMapping("/events/batch")
-    public ResponseEntity<BatchResponse> injectBatch(@RequestBody List<EventRequestDTO> events){
+    public ResponseEntity<BatchResponse> injectBatch(@RequestBody List<EventRequestDTO> events,
+            @RequestHeader(value = BatchReplayCache.HEADER, required = false) String idempotencyKey) throws IOException {
 
         if(events == null || events.isEmpty() ){
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
-        BatchResponse response = eventService.processBatch(events);
-        return ResponseEntity.ok(response) ;
+        return replayOrIngest(batchReplayCache.ticket(idempotencyKey, events), () -> eventService.processBatch(events)) ;
+    }
+
+    @PostMapping(value = "/events/batch", consumes = "application/x-ndjson")
+    public ResponseEntity<BatchResponse> injectBatchStream(HttpServletRequest request,
+            @RequestHeader(value = BatchReplayCache.HEADER, required = false) String idempotencyKey) throws IOException {
+
+        try {
+            return replayOrIngest(batchReplayCache.ticket(idempotencyKey, null),
+                    () -> eventStreamIngestor.ingest(request.getInputStream())) ;
+        } catch (EventStreamIngestor.PartialIngestException e) {
+            return partial(e) ;
+        }
+    }
+
+    @PostMapping(value = "/events/batch", consumes = BinaryEventFormat.MEDIA_TYPE)
+    public ResponseEntity<BatchResponse> injectBatchBinary(HttpServletRequest request,
+            @RequestHeader(value = BatchReplayCache.HEADER, required = false) String idempotencyKey) throws IOException {
+
+        try {
+            return replayOrIngest(batchReplayCache.ticket(idempotencyKey, null),
+                    () -> eventStreamIngestor.ingestBinary(request.getInputStream())) ;
+        } catch (EventStreamIngestor.PartialIngestException e) {
+            return partial(e) ;
+        }
+    }
+
+    @PostMapping("/events/batch/async")
+    public ResponseEntity<BatchStatusResponse> injectBatchAsync(@RequestBody List<EventRequestDTO> events){
+
+        if(events == null || events.isEmpty() ){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        // validated here so rejections are answered as on the synchronous path, only valid events are queued
+        LocalDateTime receivedTime = LocalDateTime.now() ;
+        BatchStatusResponse status = asyncBatchIngestor.submit(eventService.validate(events, receivedTime), receivedTime);
+        if(status == null){
+            return new ResponseEntity<>(HttpStatus.TOO_MANY_REQUESTS);
+        }
+        if(AsyncBatchIngestor.COMPLETED.equals(status.getStatus())){
+            return ResponseEntity.ok(status) ;
+        }
+        return ResponseEntity.accepted().body(status) ;
+    }
+
+    @GetMapping("/events/batch/{batchId}")
+    public ResponseEntity<BatchStatusResponse> batchStatus(@PathVariable String batchId){
+
+        BatchStatusResponse status = asyncBatchIngestor.status(batchId);
+        if(status == null){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return ResponseEntity.ok(status) ;
+    }
+
+    // runs the retention job now instead of waiting for events.retention.cron
+    @PostMapping("/events/retention")
+    public ResponseEntity<RetentionResponse> purgeExpired(){
+
+        if(!retentionService.isEnabled()){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return ResponseEntity.ok(retentionService.purge()) ;
+    }
+
+    // latest eventTime per machine and how late its events arrived
+    @GetMapping("/events/watermarks")
+    public ResponseEntity<List<WatermarkResponse>> watermarks(
+            @RequestParam(required = false) List<String> machineIds,
+            @RequestParam(required = false) String factoryId, @RequestParam(required = false) String lineId
+    ){
+        List<String> ids = resolveMachineIds(machineIds, factoryId, lineId) ;
+        if(ids == null){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return ResponseEntity.ok(eventWatermarks.watermarks(ids)) ;
+    }
+
+    @GetMapping("/events/lateness")
+    public ResponseEntity<LatenessResponse> lateness(){
+        return ResponseEntity.ok(eventWatermarks.lateness()) ;
     }
 
     @GetMapping("/stats")
@@ -38,6 +169,135 @@ public class EventController {
         return ResponseEntity.ok(stats) ;
     }
 
+    // one window for many machines: explicit machineIds, or every machine of a factory / a factory's line
+    @GetMapping("/stats/machines")
+    public ResponseEntity<List<QueryStatsResponse>> fetchBulkStats(
+            @RequestParam(required = false) List<String> machineIds,
+            @RequestParam(required = false) String factoryId, @RequestParam(required = false) String lineId,
+            @RequestParam LocalDateTime start, @RequestParam LocalDateTime end
+    ){
+        List<String> ids = resolveMachineIds(machineIds, factoryId, lineId) ;
+        if(ids == null){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return ResponseEntity.ok(eventService.getStats(ids, start, end)) ;
+    }
+
+    // same rows as NDJSON, written one line at a time
+    @GetMapping(value = "/stats/machines", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamBulkStats(
+            @RequestParam(required = false) List<String> machineIds,
+            @RequestParam(required = false) String factoryId, @RequestParam(required = false) String lineId,
+            @RequestParam LocalDateTime start, @RequestParam LocalDateTime end
+    ){
+        List<String> ids = resolveMachineIds(machineIds, factoryId, lineId) ;
+        if(ids == null){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        List<QueryStatsResponse> rows = eventService.getStats(ids, start, end) ;
+        StreamingResponseBody body = out -> {
+            for(QueryStatsResponse row : rows){
+                out.write(objectMapper.writeValueAsBytes(row)) ;
+                out.write('\n') ;
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body) ;
+    }
+
+    // per-slice counts for a chart: one machine, or every machine of a factory's line
+    @GetMapping("/stats/series")
+    public ResponseEntity<List<StatsSeriesPoint>> fetchStatsSeries(
+            @RequestParam(required = false) String machineId,
+            @RequestParam(required = false) String factoryId, @RequestParam(required = false) String lineId,
+            @RequestParam LocalDateTime start, @RequestParam LocalDateTime end,
+            @RequestParam(defaultValue = "60") int intervalMinutes
+    ){
+        List<String> ids = machineId != null
+                ? (factoryId == null && lineId == null ? List.of(machineId) : null)
+                : (lineId == null ? null : resolveMachineIds(null, factoryId, lineId)) ;
+        if(ids == null){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        List<StatsSeriesPoint> series = statsSeriesService.series(ids, start, end, Duration.ofMinutes(intervalMinutes)) ;
+        if(series == null){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return ResponseEntity.ok(series) ;
+    }
+
+    // server-sent `stats` / `status` events of a rolling window, pushed after every batch that touches the machines
+    @GetMapping(value = "/stats/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> liveStats(
+            @RequestParam(required = false) List<String> machineIds,
+            @RequestParam(required = false) String factoryId, @RequestParam(required = false) String lineId,
+            @RequestParam(defaultValue = "60") int windowMinutes
+    ){
+        List<String> ids = resolveMachineIds(machineIds, factoryId, lineId) ;
+        if(ids == null || ids.isEmpty() || windowMinutes <= 0){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        SseEmitter emitter = liveStatsHub.subscribe(ids, Duration.ofMinutes(windowMinutes)) ;
+        if(emitter == null){
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return ResponseEntity.ok(emitter) ;
+    }
+
+    @GetMapping("/stats/cache")
+    public ResponseEntity<CacheStatsResponse> statsCacheMetrics(){
+        return ResponseEntity.ok(eventService.getStatsCacheMetrics()) ;
+    }
+
+    // ticket null = not tracked; a null response (empty body) is a 400 and is not stored
+    private ResponseEntity<BatchResponse> replayOrIngest(BatchReplayCache.Ticket ticket, BatchIngest ingest) throws IOException {
+
+        if(ticket != null){
+            try {
+                BatchResponse previous = batchReplayCache.find(ticket) ;
+                if(previous != null){
+                    return ResponseEntity.ok().header(BatchReplayCache.REPLAYED_HEADER, "true").body(previous) ;
+                }
+            } catch (BatchReplayCache.KeyReusedException e) {
+                return new ResponseEntity<>(HttpStatus.UNPROCESSABLE_ENTITY);
+            }
+        }
+
+        BatchResponse response = ingest.run() ;
+        if(response == null){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        if(ticket != null){
+            batchReplayCache.put(ticket, response) ;
+        }
+        return ResponseEntity.ok(response) ;
+    }
+
+    // the chunks committed before a streamed body failed stay written, their counts come with the error
+    private ResponseEntity<BatchResponse> partial(EventStreamIngestor.PartialIngestException e) {
+        // Jackson's MappingIterator wraps parse errors into unchecked exceptions
+        boolean malformed = e.getCause() instanceof BinaryEventFormat.FormatException
+                || e.getCause().getCause() instanceof JsonProcessingException ;
+        return ResponseEntity.status(malformed ? HttpStatus.BAD_REQUEST : HttpStatus.INTERNAL_SERVER_ERROR).body(e.getCommitted()) ;
+    }
+
+    private interface BatchIngest {
+        BatchResponse run() throws IOException ;
+    }
+
+    private List<String> resolveMachineIds(List<String> machineIds, String factoryId, String lineId) {
+
+        if(machineIds != null && !machineIds.isEmpty()){
+            return (factoryId == null && lineId == null) ? machineIds : null ;
+        }
+        if(factoryId == null){
+            return null ;
+        }
+        if(lineId == null){
+            return machineDirectory.machinesOfFactory(factoryId).stream().sorted().toList() ;
+        }
+        return machineDirectory.machinesOfLine(factoryId, lineId) ;
+    }
+
     @GetMapping("/stats/top-defect-lines")
     public ResponseEntity<List<TopDefectLineResponse>> topDefectLines(
             @RequestParam String factoryId, @RequestParam LocalDateTime from, @RequestParam LocalDateTime to,
@@ -0,0 +1,22 @@
+package com.factory.buyogobackend.controller;
+
+import com.factory.buyogobackend.service.DefectLeaderboardService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/machines")
+public class MachineController {
+
+    @Autowired
+    private DefectLeaderboardService defectLeaderboardService;
+
+    // for machines rows written outside the application
+    @PostMapping("/reload")
+    public ResponseEntity<Integer> reload(){
+        return ResponseEntity.ok(defectLeaderboardService.refreshMachines()) ;
+    }
+}
@@ -0,0 +1,18 @@
+package com.factory.buyogobackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class BatchStatusResponse {
+
+    private String batchId ;
+    // QUEUED, COMPLETED or FAILED
+    private String status ;
+    private BatchResponse result ;
+    // rejected by the validation before queueing, in the 202 response only; result holds them once written
+    private List<Rejection> rejections ;
+}
@@ -0,0 +1,18 @@
+package com.factory.buyogobackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+public class LatenessResponse {
+
+    private long allowedLatenessSeconds ;
+    private long events ;
+    private long lateEvents ;
+    private long revisedBuckets ;
+    // events per lateness upper bound ("0s" = at or ahead of the watermark, "older" = beyond 7 days)
+    private Map<String, Long> distribution ;
+}
@@ -0,0 +1,16 @@
+package com.factory.buyogobackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class RetentionResponse {
+
+    // events and buckets before this instant were dropped
+    private LocalDateTime cutoff ;
+    private long deletedEvents ;
+    private long deletedBuckets ;
+}
@@ -0,0 +1,20 @@
+package com.factory.buyogobackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class WatermarkResponse {
+
+    private String machineId ;
+    // latest eventTime committed for the machine
+    private LocalDateTime watermark ;
+    // counted since startup
+    private long events ;
+    private long lateEvents ;
+    private long maxLatenessSeconds ;
+    private long revisedBuckets ;
+}
@@ -0,0 +1,169 @@
+package com.factory.buyogobackend.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Meters of the ingestion pipeline and the analytics queries, exposed on /actuator/prometheus.
+
+    Every meter is registered once up front, so the hot path only reads System.nanoTime() and
+    records into an already resolved Timer / Counter (no tag lookup, no Timer.Sample allocation).
+
+      events.ingest.stage{stage}        validate, dedup, lookup, decide, persist, rollup
+      events.ingest.lookup.skipped      events resolved without the existing-row SELECT
+      events.ingest.batch               whole processBatch call
+      events.ingest.replayed            batches answered from BatchReplayCache, processBatch not called
+      events.ingest.batch.size          events per request, before validation
+      events.ingest.rejected{reason}    one per Rejection reason code
+      events.ingest.lateness            seconds behind the machine's watermark, per written event
+      events.ingest.late                events later than the allowed lateness
+      events.ingest.revised.buckets     hourly buckets changed after their hour was closed
+      events.query{query}               stats, stats_bulk, stats_series, top_defect_lines
+*/
+@Component
+public class IngestMetrics {
+
+    public static final List<String> REJECTION_REASONS = List.of(
+            "NULL_EVENT_TIME", "EVENT_TIME_TOO_FAR_IN_FUTURE", "INVALID_DURATION", "NULL_EVENT_ID", "NULL_MACHINE_ID") ;
+
+    private final MeterRegistry registry ;
+
+    private final Timer validate ;
+    private final Timer dedup ;
+    private final Timer lookup ;
+    private final Timer decide ;
+    private final Timer persist ;
+    private final Timer rollup ;
+    private final Counter lookupSkipped ;
+    private final Counter replayed ;
+    private final DistributionSummary lateness ;
+    private final Counter late ;
+    private final Counter revisedBuckets ;
+    private final Timer batch ;
+    private final DistributionSummary batchSize ;
+    private final Timer statsQuery ;
+    private final Timer bulkStatsQuery ;
+    private final Timer seriesQuery ;
+    private final Timer topDefectLinesQuery ;
+    private final Map<String, Counter> rejected = new ConcurrentHashMap<>() ;
+
+    public IngestMetrics(MeterRegistry registry) {
+        this.registry = registry ;
+        this.validate = stage("validate") ;
+        this.dedup = stage("dedup") ;
+        this.lookup = stage("lookup") ;
+        this.decide = stage("decide") ;
+        this.persist = stage("persist") ;
+        this.rollup = stage("rollup") ;
+        this.lookupSkipped = Counter.builder("events.ingest.lookup.skipped")
+                .description("events resolved from the known id index without a DB lookup")
+                .register(registry) ;
+        this.replayed = Counter.builder("events.ingest.replayed")
+                .description("retried batches answered with the stored response")
+                .register(registry) ;
+        this.lateness = DistributionSummary.builder("events.ingest.lateness")
+                .description("eventTime behind the machine's watermark when written")
+                .baseUnit("seconds")
+                .serviceLevelObjectives(1, 60, 3_600, 86_400, 604_800)
+                .register(registry) ;
+        this.late = Counter.builder("events.ingest.late")
+                .description("events behind the watermark by more than the allowed lateness")
+                .register(registry) ;
+        this.revisedBuckets = Counter.builder("events.ingest.revised.buckets")
+                .description("hourly rollup buckets changed behind the hour of the watermark")
+                .register(registry) ;
+        this.batch = Timer.builder("events.ingest.batch")
+                .description("processBatch, all stages")
+                .publishPercentileHistogram()
+                .register(registry) ;
+        this.batchSize = DistributionSummary.builder("events.ingest.batch.size")
+                .description("events per batch before validation")
+                .baseUnit("events")
+                .serviceLevelObjectives(1, 10, 100, 1_000, 10_000, 100_000)
+                .register(registry) ;
+        this.statsQuery = query("stats") ;
+        this.bulkStatsQuery = query("stats_bulk") ;
+        this.seriesQuery = query("stats_series") ;
+        this.topDefectLinesQuery = query("top_defect_lines") ;
+        REJECTION_REASONS.forEach(this::rejectionCounter) ;
+    }
+
+    public static long start() {
+        return System.nanoTime() ;
+    }
+
+    // each method records the time since `started` and returns a new start for the next stage
+    public long validated(long started) { return record(validate, started) ; }
+    public long deduped(long started) { return record(dedup, started) ; }
+    public long lookedUp(long started) { return record(lookup, started) ; }
+    public long decided(long started) { return record(decide, started) ; }
+    public long persisted(long started) { return record(persist, started) ; }
+    public long rolledUp(long started) { return record(rollup, started) ; }
+
+    public void lookupSkipped(int events) {
+        lookupSkipped.increment(events) ;
+    }
+
+    public void replayed() {
+        replayed.increment() ;
+    }
+
+    public void lateness(double seconds, boolean isLate) {
+        lateness.record(seconds) ;
+        if( isLate ) late.increment() ;
+    }
+
+    public void revisedBuckets(int buckets) {
+        revisedBuckets.increment(buckets) ;
+    }
+
+    public void batch(int size, long started) {
+        batchSize.record(size) ;
+        record(batch, started) ;
+    }
+
+    public void statsQuery(long started) { record(statsQuery, started) ; }
+    public void bulkStatsQuery(long started) { record(bulkStatsQuery, started) ; }
+    public void seriesQuery(long started) { record(seriesQuery, started) ; }
+    public void topDefectLinesQuery(long started) { record(topDefectLinesQuery, started) ; }
+
+    public void rejected(String reason) {
+        rejectionCounter(reason).increment() ;
+    }
+
+    private Counter rejectionCounter(String reason) {
+        return rejected.computeIfAbsent(reason, r -> Counter.builder("events.ingest.rejected")
+                .description("events rejected by validation")
+                .tag("reason", r)
+                .register(registry)) ;
+    }
+
+    private long record(Timer timer, long started) {
+        long now = System.nanoTime() ;
+        timer.record(now - started, TimeUnit.NANOSECONDS) ;
+        return now ;
+    }
+
+    private Timer stage(String stage) {
+        return Timer.builder("events.ingest.stage")
+                .description("time spent in one stage of processBatch")
+                .tag("stage", stage)
+                .register(registry) ;
+    }
+
+    private Timer query(String query) {
+        return Timer.builder("events.query")
+                .description("analytics query, cache misses only for stats")
+                .tag("query", query)
+                .publishPercentileHistogram()
+                .register(registry) ;
+    }
+}
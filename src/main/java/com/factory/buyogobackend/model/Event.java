@@ -1,17 +1,23 @@
 package com.factory.buyogobackend.model;
 
+import com.factory.buyogobackend.repository.keys.MachineKeyConverter;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.Subselect;
+import org.hibernate.annotations.Synchronize;
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 
+// read only view over the day partitions, see EventPartitions; written through EventWriteRepositoryImpl
 @Entity
-@Table(name = "events",
-    indexes = @Index(name = "idx_machine_time", columnList = "machineId, eventTime")
-)
+@Immutable
+@Subselect("SELECT * FROM events")
+@Synchronize("events")
 @NoArgsConstructor
 @Getter
 @Setter
@@ -20,7 +26,9 @@ public class Event {
     @Id
     private String eventId ;
 
-    @Column(nullable = false)
+    // stored as its interned key, see KeyDictionary
+    @Convert(converter = MachineKeyConverter.class)
+    @Column(name = "machine_key", nullable = false)
     private String machineId ;
 
     @Column(nullable = false)
@@ -34,4 +42,25 @@ public class Event {
 
     @Column(nullable = false)
     private int defectCount;
+
+    // 64 bit hash of the fields compared for dedup, computed once when the request is mapped
+    @Column(nullable = false)
+    private long payloadHash ;
+
+    public static long hashPayload(String machineId, LocalDateTime eventTime, int durationMs, int defectCount) {
+        long h = 0xcbf29ce484222325L ;
+        for(int i = 0; i < machineId.length(); i++){
+            h = (h ^ machineId.charAt(i)) * 0x100000001b3L ;
+        }
+        h = mix(h ^ eventTime.toEpochSecond(ZoneOffset.UTC)) ;
+        h = mix(h ^ eventTime.getNano()) ;
+        h = mix(h ^ (((long) durationMs << 32) | (defectCount & 0xffffffffL))) ;
+        return h ;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L ;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL ;
+        return z ^ (z >>> 31) ;
+    }
 }
@@ -0,0 +1,49 @@
+package com.factory.buyogobackend.model;
+
+import com.factory.buyogobackend.repository.keys.KeyKind;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+// Integer key of an external machineId / factoryId / lineId, assigned once by KeyDictionary and never reused
+@Entity
+@Table(name = "id_keys",
+    uniqueConstraints = @UniqueConstraint(name = "uk_id_keys_external", columnNames = {"kind", "externalId"})
+)
+@IdClass(IdKey.Key.class)
+@NoArgsConstructor
+@Getter
+@Setter
+@AllArgsConstructor
+public class IdKey {
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private KeyKind kind ;
+
+    @Id
+    private int keyId ;
+
+    @Column(nullable = false)
+    private String externalId ;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private KeyKind kind ;
+        private int keyId ;
+    }
+}
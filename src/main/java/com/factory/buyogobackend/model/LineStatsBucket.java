@@ -0,0 +1,49 @@
+package com.factory.buyogobackend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+// Hourly rollup of the events table per factory line (through Machine), kept in sync by EventService.processBatch
+@Entity
+@Table(name = "line_stats_buckets")
+@IdClass(LineStatsBucket.Key.class)
+@NoArgsConstructor
+@Getter
+@Setter
+@AllArgsConstructor
+public class LineStatsBucket {
+    // interned keys (KeyDictionary), the services resolve them before building deltas
+    @Id
+    @Column(name = "factory_key")
+    private int factoryKey ;
+
+    @Id
+    @Column(name = "line_key")
+    private int lineKey ;
+
+    @Id
+    private LocalDateTime bucketStart ;
+
+    @Column(nullable = false)
+    private long eventCount ;
+
+    // sum of defectCount, -1 (unknown) contributes 0
+    @Column(nullable = false)
+    private long defectSum ;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private int factoryKey ;
+        private int lineKey ;
+        private LocalDateTime bucketStart ;
+    }
+}
@@ -1,6 +1,10 @@
 package com.factory.buyogobackend.model;
 
+import com.factory.buyogobackend.repository.keys.CatalogueKeyConverter;
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
@@ -10,12 +14,20 @@ import lombok.Setter;
 
 @Entity
 @Table(name = "machines")
+@EntityListeners(MachineChangeListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
 public class Machine {
     @Id
     private String machineId ;
+
+    // stored as interned keys, see KeyDictionary
+    @Convert(converter = CatalogueKeyConverter.Factory.class)
+    @Column(name = "factory_key")
     private String factoryId ;
+
+    @Convert(converter = CatalogueKeyConverter.Line.class)
+    @Column(name = "line_key")
     private String lineId ;
 }
@@ -0,0 +1,43 @@
+package com.factory.buyogobackend.model;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// JPA listener on Machine: publishes MachinesChangedEvent once the change is committed, the services
+// that depend on the machines (directory, line rollup) listen for it
+@Component
+public class MachineChangeListener {
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher ;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void machineChanged(Machine machine) {
+
+        if( !TransactionSynchronizationManager.isSynchronizationActive() ) {
+            eventPublisher.publishEvent(new MachinesChangedEvent()) ;
+            return ;
+        }
+
+        // one event per transaction, however many machines it touches
+        for(TransactionSynchronization s : TransactionSynchronizationManager.getSynchronizations()){
+            if( s instanceof PublishAfterCommit ) return ;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new PublishAfterCommit()) ;
+    }
+
+    private class PublishAfterCommit implements TransactionSynchronization {
+        @Override
+        public void afterCommit() {
+            eventPublisher.publishEvent(new MachinesChangedEvent()) ;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.factory.buyogobackend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+// Hourly rollup of the events table per machine, kept in sync by EventService.processBatch
+@Entity
+@Table(name = "machine_stats_buckets")
+@IdClass(MachineStatsBucket.Key.class)
+@NoArgsConstructor
+@Getter
+@Setter
+@AllArgsConstructor
+public class MachineStatsBucket {
+    // interned key (KeyDictionary), the services resolve it before building deltas
+    @Id
+    @Column(name = "machine_key")
+    private int machineKey ;
+
+    @Id
+    private LocalDateTime bucketStart ;
+
+    @Column(nullable = false)
+    private long eventCount ;
+
+    // sum of defectCount, -1 (unknown) contributes 0
+    @Column(nullable = false)
+    private long defectSum ;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private int machineKey ;
+        private LocalDateTime bucketStart ;
+    }
+}
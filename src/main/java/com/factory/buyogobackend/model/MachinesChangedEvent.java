@@ -0,0 +1,5 @@
+package com.factory.buyogobackend.model;
+
+// machines were inserted, updated or removed through JPA and the change is committed
+public record MachinesChangedEvent() {
+}
@@ -0,0 +1,25 @@
+package com.factory.buyogobackend.repository;
+
+import com.factory.buyogobackend.repository.projection.MachineStatsProjection;
+import com.factory.buyogobackend.repository.projection.SliceTotals;
+import com.factory.buyogobackend.repository.projection.StatsProjection;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface EventStatsQueryRepository {
+
+    // events of one machine in [start, end)
+    StatsProjection fetchStats(String machineId, LocalDateTime start, LocalDateTime end) ;
+
+    // one row per machine that has events in [start, end)
+    List<MachineStatsProjection> fetchStatsByMachine(Collection<String> machineIds, LocalDateTime start, LocalDateTime end) ;
+
+    // events of all machineIds in [start, end) summed per slice of intervalMillis counted from origin, empty slices absent
+    List<SliceTotals> fetchStatsBySlice(Collection<String> machineIds, LocalDateTime origin, long intervalMillis,
+                                        LocalDateTime start, LocalDateTime end) ;
+
+    // latest eventTime of machineId at or after from, null when there is none
+    LocalDateTime findLatestEventTime(String machineId, LocalDateTime from) ;
+}
@@ -0,0 +1,171 @@
+package com.factory.buyogobackend.repository;
+
+import com.factory.buyogobackend.repository.jdbc.EventPartitions;
+import com.factory.buyogobackend.repository.jdbc.ScanFanOut;
+import com.factory.buyogobackend.repository.keys.KeyDictionary;
+import com.factory.buyogobackend.repository.keys.KeyKind;
+import com.factory.buyogobackend.repository.projection.MachineStatsProjection;
+import com.factory.buyogobackend.repository.projection.MachineTotals;
+import com.factory.buyogobackend.repository.projection.SliceTotals;
+import com.factory.buyogobackend.repository.projection.StatsProjection;
+import com.factory.buyogobackend.repository.projection.StatsTotals;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+
+/*
+    Plain JDBC, split by ScanFanOut into one part per machine and time slice: H2 seeks only the machine
+    column of idx_machine_time for a machine list (= ANY / IN), so one grouped query over many machines
+    reads every row of each of them; a part with a single machine_key = ? is a true (machine, time) range.
+    Each part is then routed to the day partitions (EventPartitions) overlapping its range, one query
+    per day, and days without a table are never read.
+    machineIds are translated to their keys first, ids that were never stored are left out.
+*/
+public class EventStatsQueryRepositoryImpl implements EventStatsQueryRepository {
+
+    // %s: the day table of EventPartitions
+    private static final String STATS_SQL = """
+        SELECT
+            COUNT(*) AS events_count,
+            COALESCE(SUM(
+                CASE WHEN defect_count != -1 THEN defect_count ELSE 0 END
+            ), 0) AS defects_count
+        FROM %s
+        WHERE machine_key = ?
+          AND event_time >= ?
+          AND event_time < ?
+    """;
+
+    // grouped through a derived table, the slice expression is evaluated once per row
+    private static final String STATS_BY_SLICE_SQL = """
+        SELECT slice, COUNT(*) AS events_count, COALESCE(SUM(defects), 0) AS defects_count
+        FROM (
+            SELECT
+                DATEDIFF('MILLISECOND', CAST(? AS TIMESTAMP), event_time) / ? AS slice,
+                CASE WHEN defect_count != -1 THEN defect_count ELSE 0 END AS defects
+            FROM %s
+            WHERE machine_key = ?
+              AND event_time >= ?
+              AND event_time < ?
+        ) t
+        GROUP BY slice
+    """;
+
+    // H2 reads the whole idx_machine_time range for MAX, callers keep it short
+    private static final String LATEST_SQL = """
+        SELECT MAX(event_time) FROM %s
+        WHERE machine_key = ?
+          AND event_time >= ?
+    """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate ;
+
+    @Autowired
+    private KeyDictionary keyDictionary ;
+
+    @Autowired
+    private ScanFanOut scanFanOut ;
+
+    @Autowired
+    private EventPartitions eventPartitions ;
+
+    @Override
+    public StatsProjection fetchStats(String machineId, LocalDateTime start, LocalDateTime end) {
+        StatsTotals totals = new StatsTotals(0, 0) ;
+        int key = keyDictionary.keyOf(KeyKind.MACHINE, machineId) ;
+        if( key == KeyDictionary.NO_KEY ) return totals ;
+
+        for(LocalDate day : eventPartitions.overlapping(start, end)){
+            totals = totals.plus(jdbcTemplate.queryForObject(STATS_SQL.formatted(eventPartitions.table(day)),
+                    (rs, i) -> new StatsTotals(rs.getLong("events_count"), rs.getLong("defects_count")),
+                    key, start, end)) ;
+        }
+        return totals ;
+    }
+
+    @Override
+    public List<MachineStatsProjection> fetchStatsByMachine(Collection<String> machineIds, LocalDateTime start, LocalDateTime end) {
+
+        Integer[] keys = keyDictionary.keysOf(KeyKind.MACHINE, machineIds) ;
+        if( keys.length == 0 ) return List.of() ;
+
+        List<LocalDateTime[]> ranges = scanFanOut.slices(start, end) ;
+        List<Callable<long[]>> parts = new ArrayList<>(keys.length * ranges.size()) ;
+        for(Integer key : keys){
+            for(LocalDateTime[] range : ranges){
+                for(LocalDate day : eventPartitions.overlapping(range[0], range[1])){
+                    String sql = STATS_SQL.formatted(eventPartitions.table(day)) ;
+                    parts.add(() -> jdbcTemplate.queryForObject(sql,
+                            (rs, i) -> new long[]{ key, rs.getLong("events_count"), rs.getLong("defects_count") },
+                            key, range[0], range[1])) ;
+                }
+            }
+        }
+
+        Map<Integer, long[]> byKey = new TreeMap<>() ;
+        for(long[] part : scanFanOut.run(parts)){
+            if( part[1] == 0 ) continue ;
+            long[] totals = byKey.computeIfAbsent((int) part[0], k -> new long[2]) ;
+            totals[0] += part[1] ;
+            totals[1] += part[2] ;
+        }
+
+        List<MachineStatsProjection> rows = new ArrayList<>(byKey.size()) ;
+        byKey.forEach((key, totals) ->
+                rows.add(new MachineTotals(keyDictionary.valueOf(KeyKind.MACHINE, key), totals[0], totals[1]))) ;
+        return rows ;
+    }
+
+    @Override
+    public List<SliceTotals> fetchStatsBySlice(Collection<String> machineIds, LocalDateTime origin, long intervalMillis,
+                                               LocalDateTime start, LocalDateTime end) {
+
+        Integer[] keys = keyDictionary.keysOf(KeyKind.MACHINE, machineIds) ;
+        if( keys.length == 0 ) return List.of() ;
+
+        // cut on slice boundaries, so every slice is counted by the parts of one range only
+        List<LocalDateTime[]> ranges = scanFanOut.alignedSlices(origin, intervalMillis, start, end) ;
+        List<Callable<List<SliceTotals>>> parts = new ArrayList<>(keys.length * ranges.size()) ;
+        for(Integer key : keys){
+            for(LocalDateTime[] range : ranges){
+                // a slice cut by midnight is counted by two days and merged below
+                for(LocalDate day : eventPartitions.overlapping(range[0], range[1])){
+                    String sql = STATS_BY_SLICE_SQL.formatted(eventPartitions.table(day)) ;
+                    parts.add(() -> jdbcTemplate.query(sql,
+                            (rs, i) -> new SliceTotals(rs.getLong("slice"), rs.getLong("events_count"), rs.getLong("defects_count")),
+                            origin, intervalMillis, key, range[0], range[1])) ;
+                }
+            }
+        }
+
+        Map<Long, SliceTotals> bySlice = new TreeMap<>() ;
+        for(List<SliceTotals> part : scanFanOut.run(parts)){
+            for(SliceTotals row : part) bySlice.merge(row.getSlice(), row, SliceTotals::plus) ;
+        }
+        return new ArrayList<>(bySlice.values()) ;
+    }
+
+    @Override
+    public LocalDateTime findLatestEventTime(String machineId, LocalDateTime from) {
+        int key = keyDictionary.keyOf(KeyKind.MACHINE, machineId) ;
+        if( key == KeyDictionary.NO_KEY ) return null ;
+
+        // newest day first, the first one with a row of the machine has the latest
+        List<LocalDate> days = eventPartitions.from(from) ;
+        for(int i = days.size() - 1; i >= 0; i--){
+            LocalDateTime latest = jdbcTemplate.queryForObject(LATEST_SQL.formatted(eventPartitions.table(days.get(i))),
+                    LocalDateTime.class, key, from) ;
+            if( latest != null ) return latest ;
+        }
+        return null ;
+    }
+}
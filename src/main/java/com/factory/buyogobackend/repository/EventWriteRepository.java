@@ -0,0 +1,22 @@
+package com.factory.buyogobackend.repository;
+
+import com.factory.buyogobackend.model.Event;
+import com.factory.buyogobackend.repository.jdbc.UpsertResult;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public interface EventWriteRepository {
+
+    UpsertResult upsertBatch(Collection<Event> events) ;
+
+    // bulk delete that also clears the tables derived from events
+    void deleteAll() ;
+
+    // drops the day partitions before cutoff whole, returns the days dropped; runs outside a transaction (DDL)
+    List<LocalDate> dropDaysBefore(LocalDate cutoff) ;
+
+    // forgets up to `limit` eventIds of the dropped days, returns the ids removed, i.e. the events dropped
+    int deleteDroppedIds(LocalDate cutoff, int limit) ;
+}
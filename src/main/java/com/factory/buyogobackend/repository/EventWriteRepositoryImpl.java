@@ -0,0 +1,393 @@
+package com.factory.buyogobackend.repository;
+
+import com.factory.buyogobackend.metrics.IngestMetrics;
+import com.factory.buyogobackend.model.Event;
+import com.factory.buyogobackend.repository.hot.HotEventTier;
+import com.factory.buyogobackend.repository.jdbc.EventIdLocks;
+import com.factory.buyogobackend.repository.jdbc.EventPartitions;
+import com.factory.buyogobackend.repository.jdbc.KnownEventIds;
+import com.factory.buyogobackend.repository.jdbc.UpsertResult;
+import com.factory.buyogobackend.repository.keys.KeyDictionary;
+import com.factory.buyogobackend.repository.keys.KeyKind;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+    Set based write path for a batch of already in-memory deduplicated events, over the day partitions
+    of EventPartitions: event_days decides (one row per eventId with its day, payload hash and
+    receivedTime), the day tables hold the rows.
+
+    A batch costs a fixed number of round trips, plus one batch per day it touches:
+      1. SELECT (payload_hash, received_time) of the candidate ids from event_days, no persistence
+         context, only for ids KnownEventIds can not answer: definitely new ids and retransmissions skip it
+      2. batched UPDATE of event_days for ids that exist with a different payload hash -> updated
+         (the event_days rows are locked and the full stored rows read from their days first, only for
+         these ids, as the superseded versions); the row is then updated in its day, or deleted from
+         the old day and inserted into the new one when the eventTime moved to another day
+      3. batched INSERT ... WHERE NOT EXISTS into event_days for ids that do not exist -> inserted,
+         then the rows into their days
+    The dedup / receivedTime rules are repeated in the event_days statements, so a row changed by a
+    concurrent batch between 1 and 2/3 is never overwritten by an older payload, and an eventId is
+    stored in one day only.
+
+    Candidates are locked in EventIdLocks and written in eventId order, so a concurrent batch of this
+    process that shares ids waits for our commit instead of racing us into a primary key violation.
+    A row that was still changed between 1 and 2/3 (by a writer outside this process) is re-read and
+    re-classified on its own, up to MAX_ATTEMPTS times, instead of failing or dropping the whole batch.
+    Events of a day retention already dropped are ignored.
+*/
+@Slf4j
+public class EventWriteRepositoryImpl implements EventWriteRepository {
+
+    private static final int IN_LIST_CHUNK = 1000 ;
+    private static final int MAX_ATTEMPTS = 3 ;
+
+    private static final String UPDATE_DAY_SQL = """
+        UPDATE event_days
+           SET event_day = ?, received_time = ?, payload_hash = ?
+         WHERE event_id = ?
+           AND received_time <= ?
+           AND payload_hash <> ?
+    """;
+
+    private static final String INSERT_DAY_SQL = """
+        INSERT INTO event_days (event_id, event_day, received_time, payload_hash)
+        SELECT ?, ?, ?, ?
+         WHERE NOT EXISTS (SELECT 1 FROM event_days WHERE event_id = ?)
+    """;
+
+    private static final String EXISTING_SQL = """
+        SELECT event_id, payload_hash, received_time
+          FROM event_days
+         WHERE event_id IN (:ids)
+    """;
+
+    private static final String LOCK_SQL = """
+        SELECT event_id, event_day
+          FROM event_days
+         WHERE event_id IN (:ids)
+           FOR UPDATE
+    """;
+
+    private static final String DELETE_DAYS_SQL = """
+        DELETE FROM event_days
+         WHERE event_day < ?
+         FETCH FIRST ? ROWS ONLY
+    """;
+
+    // %s: the day table of EventPartitions
+    private static final String SUPERSEDED_SQL = """
+        SELECT event_id, machine_key, event_time, received_time, duration_ms, defect_count, payload_hash
+          FROM %s
+         WHERE event_id IN (:ids)
+    """;
+
+    private static final String UPDATE_SQL = """
+        UPDATE %s
+           SET machine_key = ?, event_time = ?, received_time = ?, duration_ms = ?, defect_count = ?, payload_hash = ?
+         WHERE event_id = ?
+    """;
+
+    private static final String INSERT_SQL = """
+        INSERT INTO %s (event_id, machine_key, event_time, received_time, duration_ms, defect_count, payload_hash)
+        VALUES (?, ?, ?, ?, ?, ?, ?)
+    """;
+
+    private static final String DELETE_SQL = """
+        DELETE FROM %s WHERE event_id = ?
+    """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate ;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedJdbcTemplate ;
+
+    @Autowired
+    private IngestMetrics metrics ;
+
+    @Autowired
+    private EventIdLocks eventIdLocks ;
+
+    @Autowired
+    private KnownEventIds knownEventIds ;
+
+    @Autowired
+    private HotEventTier hotEventTier ;
+
+    @Autowired
+    private KeyDictionary keyDictionary ;
+
+    @Autowired
+    private EventPartitions eventPartitions ;
+
+    @Override
+    public UpsertResult upsertBatch(Collection<Event> events) {
+
+        List<Event> candidates = new ArrayList<>(events) ;
+        candidates.sort(Comparator.comparing(Event::getEventId));
+
+        List<Event> inserted = new ArrayList<>() ;
+        List<Event> updated = new ArrayList<>() ;
+        List<Event> superseded = new ArrayList<>() ;
+        if( candidates.isEmpty() ) {
+            return new UpsertResult(inserted, updated, superseded, 0, 0) ;
+        }
+
+        int deduped = 0 ;
+        int ignored = 0 ;
+        Map<String, Long> storedPayloads = new HashMap<>() ;
+        try (EventIdLocks.Lease lease = eventIdLocks.lock(candidates.stream().map(Event::getEventId).toList())) {
+
+            List<Event> pending = candidates ;
+            for(int attempt = 1; !pending.isEmpty(); attempt++){
+
+                long started = IngestMetrics.start() ;
+                List<Event> lookup = pending ;
+                if( attempt == 1 ) {
+                    // retransmitted payloads are deduped and definitely new ids inserted without the SELECT
+                    List<Event> remaining = new ArrayList<>(pending.size()) ;
+                    lookup = new ArrayList<>() ;
+                    for(Event e : pending){
+                        if( eventPartitions.isExpired(EventPartitions.dayOf(e.getEventTime())) ) {
+                            ignored++ ;
+                            continue ;
+                        }
+                        Long recentHash = knownEventIds.recentPayloadHash(e.getEventId()) ;
+                        if( recentHash != null && recentHash == e.getPayloadHash() ) {
+                            deduped++ ;
+                            continue ;
+                        }
+                        remaining.add(e) ;
+                        if( !knownEventIds.isDefinitelyNew(e.getEventId()) ) lookup.add(e) ;
+                    }
+                    metrics.lookupSkipped(pending.size() - lookup.size()) ;
+                    pending = remaining ;
+                }
+                Map<String, StoredVersion> stored = lookup.isEmpty() ? Map.of() : findExisting(lookup) ;
+                started = metrics.lookedUp(started) ;
+
+                List<Event> toUpdate = new ArrayList<>() ;
+                List<Event> toInsert = new ArrayList<>() ;
+                for(Event e : pending){
+                    StoredVersion dbEvent = stored.get(e.getEventId()) ;
+                    if( dbEvent == null ) toInsert.add(e) ;
+                    else if( e.getPayloadHash() == dbEvent.payloadHash() ) {
+                        deduped++ ;
+                        storedPayloads.put(e.getEventId(), dbEvent.payloadHash()) ;
+                    }
+                    else if( e.getReceivedTime().isBefore(dbEvent.receivedTime()) ) {
+                        ignored++ ;
+                        storedPayloads.put(e.getEventId(), dbEvent.payloadHash()) ;
+                    }
+                    else toUpdate.add(e) ;
+                }
+                started = metrics.decided(started) ;
+
+                // rows changed behind our back since the SELECT, re-resolved against the new stored row
+                List<Event> conflicts = new ArrayList<>() ;
+
+                DayWrites days = new DayWrites() ;
+
+                if( !toUpdate.isEmpty() ) {
+                    // full rows only for the ids being replaced, the rollups need what they subtract
+                    Map<String, Event> previous = findSuperseded(toUpdate) ;
+                    List<Event> replacing = new ArrayList<>(toUpdate.size()) ;
+                    List<Object[]> updateArgs = new ArrayList<>(toUpdate.size()) ;
+                    for(Event e : toUpdate){
+                        // gone since the lookup (deleted, or its day dropped by retention)
+                        if( !previous.containsKey(e.getEventId()) ) {
+                            conflicts.add(e) ;
+                            continue ;
+                        }
+                        replacing.add(e) ;
+                        updateArgs.add(new Object[]{
+                                EventPartitions.dayOf(e.getEventTime()), e.getReceivedTime(), e.getPayloadHash(),
+                                e.getEventId(), e.getReceivedTime(), e.getPayloadHash()
+                        });
+                    }
+                    int[] updateCounts = jdbcTemplate.batchUpdate(UPDATE_DAY_SQL, updateArgs) ;
+                    for(int i = 0; i < replacing.size(); i++){
+                        Event e = replacing.get(i) ;
+                        if( updateCounts[i] > 0 ) {
+                            Event old = previous.get(e.getEventId()) ;
+                            updated.add(e) ;
+                            superseded.add(old) ;
+                            days.replace(old, e) ;
+                        } else conflicts.add(e) ;
+                    }
+                }
+
+                if( !toInsert.isEmpty() ) {
+                    List<Object[]> insertArgs = new ArrayList<>(toInsert.size()) ;
+                    for(Event e : toInsert){
+                        insertArgs.add(new Object[]{
+                                e.getEventId(), EventPartitions.dayOf(e.getEventTime()), e.getReceivedTime(),
+                                e.getPayloadHash(), e.getEventId()
+                        });
+                    }
+                    int[] insertCounts = jdbcTemplate.batchUpdate(INSERT_DAY_SQL, insertArgs) ;
+                    for(int i = 0; i < toInsert.size(); i++){
+                        if( insertCounts[i] > 0 ) {
+                            inserted.add(toInsert.get(i)) ;
+                            days.insert(toInsert.get(i)) ;
+                        } else conflicts.add(toInsert.get(i)) ;
+                    }
+                }
+                days.write() ;
+                metrics.persisted(started) ;
+
+                if( attempt == MAX_ATTEMPTS ) {
+                    log.warn("{} events still conflicting after {} attempts, ignored", conflicts.size(), attempt);
+                    ignored += conflicts.size() ;
+                    break ;
+                }
+                conflicts.sort(Comparator.comparing(Event::getEventId));
+                pending = conflicts ;
+            }
+        }
+
+        inserted.forEach(e -> storedPayloads.put(e.getEventId(), e.getPayloadHash())) ;
+        updated.forEach(e -> storedPayloads.put(e.getEventId(), e.getPayloadHash())) ;
+        knownEventIds.record(storedPayloads) ;
+
+        return new UpsertResult(inserted, updated, superseded, deduped, ignored) ;
+    }
+
+    // the day tables are emptied, not dropped: DDL would commit the surrounding transaction
+    @Override
+    @Transactional
+    public void deleteAll() {
+        jdbcTemplate.update("DELETE FROM machine_stats_buckets") ;
+        jdbcTemplate.update("DELETE FROM line_stats_buckets") ;
+        for(LocalDate day : eventPartitions.all()){
+            jdbcTemplate.update("DELETE FROM " + eventPartitions.table(day)) ;
+        }
+        jdbcTemplate.update("DELETE FROM event_days") ;
+        knownEventIds.clear() ;
+        hotEventTier.clear() ;
+    }
+
+    @Override
+    public List<LocalDate> dropDaysBefore(LocalDate cutoff) {
+        return eventPartitions.dropBefore(cutoff) ;
+    }
+
+    @Override
+    public int deleteDroppedIds(LocalDate cutoff, int limit) {
+        return jdbcTemplate.update(DELETE_DAYS_SQL, cutoff, limit) ;
+    }
+
+    private Map<String, StoredVersion> findExisting(List<Event> events) {
+
+        Map<String, StoredVersion> stored = new HashMap<>() ;
+        for(List<String> ids : idChunks(events)){
+            namedJdbcTemplate.query(EXISTING_SQL, Map.of("ids", ids), rs -> {
+                StoredVersion v = new StoredVersion(rs.getLong("payload_hash"),
+                        rs.getObject("received_time", LocalDateTime.class)) ;
+                stored.put(rs.getString("event_id"), v) ;
+            });
+        }
+        return stored ;
+    }
+
+    // locks the event_days rows, then reads the stored rows from the days they point to
+    private Map<String, Event> findSuperseded(List<Event> events) {
+
+        Map<LocalDate, List<String>> byDay = new TreeMap<>() ;
+        for(List<String> ids : idChunks(events)){
+            namedJdbcTemplate.query(LOCK_SQL, Map.of("ids", ids), rs -> {
+                byDay.computeIfAbsent(rs.getObject("event_day", LocalDate.class), d -> new ArrayList<>()).add(rs.getString("event_id")) ;
+            });
+        }
+
+        Map<String, Event> stored = new HashMap<>() ;
+        for(Map.Entry<LocalDate, List<String>> day : byDay.entrySet()){
+            if( !eventPartitions.exists(day.getKey()) ) continue ;
+            String sql = SUPERSEDED_SQL.formatted(eventPartitions.table(day.getKey())) ;
+            for(List<String> ids : chunks(day.getValue())){
+                namedJdbcTemplate.query(sql, Map.of("ids", ids), rs -> {
+                    Event e = new Event() ;
+                    e.setEventId(rs.getString("event_id"));
+                    e.setMachineId(keyDictionary.valueOf(KeyKind.MACHINE, rs.getInt("machine_key")));
+                    e.setEventTime(rs.getObject("event_time", LocalDateTime.class));
+                    e.setReceivedTime(rs.getObject("received_time", LocalDateTime.class));
+                    e.setDurationMs(rs.getInt("duration_ms"));
+                    e.setDefectCount(rs.getInt("defect_count"));
+                    e.setPayloadHash(rs.getLong("payload_hash"));
+                    stored.put(e.getEventId(), e) ;
+                });
+            }
+        }
+        return stored ;
+    }
+
+    // interned by processBatch before its transaction opened
+    private int machineKey(Event e) {
+        return keyDictionary.requireKey(KeyKind.MACHINE, e.getMachineId()) ;
+    }
+
+    private List<List<String>> idChunks(List<Event> events) {
+        return chunks(events.stream().map(Event::getEventId).toList()) ;
+    }
+
+    private static List<List<String>> chunks(List<String> ids) {
+        List<List<String>> chunks = new ArrayList<>() ;
+        for(int from = 0; from < ids.size(); from += IN_LIST_CHUNK){
+            chunks.add(ids.subList(from, Math.min(from + IN_LIST_CHUNK, ids.size()))) ;
+        }
+        return chunks ;
+    }
+
+    // what the dedup / receivedTime decision needs from a stored row
+    private record StoredVersion(long payloadHash, LocalDateTime receivedTime) {}
+
+    // row writes of one attempt grouped per day table, applied once event_days has accepted them
+    private class DayWrites {
+
+        private final Map<LocalDate, List<Object[]>> inserts = new TreeMap<>() ;
+        private final Map<LocalDate, List<Object[]>> updates = new TreeMap<>() ;
+        private final Map<LocalDate, List<Object[]>> deletes = new TreeMap<>() ;
+
+        void insert(Event e) {
+            inserts.computeIfAbsent(EventPartitions.dayOf(e.getEventTime()), d -> new ArrayList<>()).add(new Object[]{
+                    e.getEventId(), machineKey(e), e.getEventTime(), e.getReceivedTime(),
+                    e.getDurationMs(), e.getDefectCount(), e.getPayloadHash()
+            });
+        }
+
+        // an eventTime moved to another day is a delete there and an insert here
+        void replace(Event old, Event e) {
+            LocalDate day = EventPartitions.dayOf(e.getEventTime()) ;
+            LocalDate oldDay = EventPartitions.dayOf(old.getEventTime()) ;
+            if( !day.equals(oldDay) ) {
+                deletes.computeIfAbsent(oldDay, d -> new ArrayList<>()).add(new Object[]{ e.getEventId() }) ;
+                insert(e) ;
+                return ;
+            }
+            updates.computeIfAbsent(day, d -> new ArrayList<>()).add(new Object[]{
+                    machineKey(e), e.getEventTime(), e.getReceivedTime(), e.getDurationMs(), e.getDefectCount(),
+                    e.getPayloadHash(), e.getEventId()
+            });
+        }
+
+        void write() {
+            deletes.forEach((day, args) -> jdbcTemplate.batchUpdate(DELETE_SQL.formatted(eventPartitions.table(day)), args)) ;
+            updates.forEach((day, args) -> jdbcTemplate.batchUpdate(UPDATE_SQL.formatted(eventPartitions.table(day)), args)) ;
+            inserts.forEach((day, args) -> jdbcTemplate.batchUpdate(INSERT_SQL.formatted(eventPartitions.table(day)), args)) ;
+        }
+    }
+}
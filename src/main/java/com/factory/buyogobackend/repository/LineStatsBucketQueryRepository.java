@@ -0,0 +1,12 @@
+package com.factory.buyogobackend.repository;
+
+import com.factory.buyogobackend.repository.projection.TopDefectLineProjection;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface LineStatsBucketQueryRepository {
+
+    // one row per line of factoryId that has buckets starting in [from, to)
+    List<TopDefectLineProjection> sumBucketsByLine(String factoryId, LocalDateTime from, LocalDateTime to) ;
+}
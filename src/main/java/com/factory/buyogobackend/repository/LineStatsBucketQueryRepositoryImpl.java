@@ -0,0 +1,45 @@
+package com.factory.buyogobackend.repository;
+
+import com.factory.buyogobackend.repository.keys.KeyDictionary;
+import com.factory.buyogobackend.repository.keys.KeyKind;
+import com.factory.buyogobackend.repository.projection.LineTotals;
+import com.factory.buyogobackend.repository.projection.TopDefectLineProjection;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Plain JDBC on the factory / line keys, translated back to the external lineId per row
+public class LineStatsBucketQueryRepositoryImpl implements LineStatsBucketQueryRepository {
+
+    private static final String SUM_BY_LINE_SQL = """
+        SELECT
+            line_key,
+            SUM(event_count) AS event_count,
+            SUM(defect_sum) AS total_defects
+        FROM line_stats_buckets
+        WHERE factory_key = ?
+          AND bucket_start >= ?
+          AND bucket_start < ?
+        GROUP BY line_key
+    """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate ;
+
+    @Autowired
+    private KeyDictionary keyDictionary ;
+
+    @Override
+    public List<TopDefectLineProjection> sumBucketsByLine(String factoryId, LocalDateTime from, LocalDateTime to) {
+
+        int factoryKey = keyDictionary.keyOf(KeyKind.FACTORY, factoryId) ;
+        if( factoryKey == KeyDictionary.NO_KEY ) return List.of() ;
+
+        return jdbcTemplate.query(SUM_BY_LINE_SQL,
+                (rs, i) -> new LineTotals(keyDictionary.valueOf(KeyKind.LINE, rs.getInt("line_key")),
+                        rs.getLong("total_defects"), rs.getLong("event_count")),
+                factoryKey, from, to) ;
+    }
+}
@@ -0,0 +1,12 @@
+package com.factory.buyogobackend.repository;
+
+import com.factory.buyogobackend.model.LineStatsBucket;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+// Reads go through LineStatsBucketQueryRepository: the factory / line columns hold interned keys
+@Repository
+public interface LineStatsBucketRepository
+        extends JpaRepository<LineStatsBucket, LineStatsBucket.Key>, LineStatsBucketWriteRepository,
+                LineStatsBucketQueryRepository {
+}
@@ -0,0 +1,18 @@
+package com.factory.buyogobackend.repository;
+
+import com.factory.buyogobackend.model.LineStatsBucket;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public interface LineStatsBucketWriteRepository {
+
+    // adds eventCount / defectSum of every delta onto the stored bucket, creating missing buckets
+    void applyDeltas(Collection<LineStatsBucket> deltas) ;
+
+    // recomputes every line bucket from machine_stats_buckets and the current machines table
+    void rebuild() ;
+
+    // drops every line bucket starting before cutoff, returns the buckets deleted
+    int deleteBefore(LocalDateTime cutoff) ;
+}
@@ -0,0 +1,83 @@
+package com.factory.buyogobackend.repository;
+
+import com.factory.buyogobackend.model.LineStatsBucket;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+// Same insert-or-increment scheme as MachineStatsBucketWriteRepositoryImpl, keyed by (factoryKey, lineKey, bucketStart)
+public class LineStatsBucketWriteRepositoryImpl implements LineStatsBucketWriteRepository {
+
+    private static final String INCREMENT_SQL = """
+        UPDATE line_stats_buckets
+           SET event_count = event_count + ?, defect_sum = defect_sum + ?
+         WHERE factory_key = ? AND line_key = ? AND bucket_start = ?
+    """;
+
+    private static final String INSERT_SQL = """
+        INSERT INTO line_stats_buckets (factory_key, line_key, bucket_start, event_count, defect_sum)
+        VALUES (?, ?, ?, ?, ?)
+    """;
+
+    // machines is keyed by the external machineId, so the machine key is joined to it through id_keys
+    private static final String REBUILD_SQL = """
+        INSERT INTO line_stats_buckets (factory_key, line_key, bucket_start, event_count, defect_sum)
+        SELECT m.factory_key, m.line_key, b.bucket_start, SUM(b.event_count), SUM(b.defect_sum)
+          FROM machine_stats_buckets b
+          JOIN id_keys mk ON mk.kind = 'MACHINE' AND mk.key_id = b.machine_key
+          JOIN machines m ON m.machine_id = mk.external_id
+         WHERE m.factory_key IS NOT NULL AND m.line_key IS NOT NULL
+         GROUP BY m.factory_key, m.line_key, b.bucket_start
+    """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate ;
+
+    @Override
+    public void applyDeltas(Collection<LineStatsBucket> deltas) {
+
+        List<LineStatsBucket> sorted = new ArrayList<>(deltas) ;
+        sorted.removeIf(d -> d.getEventCount() == 0 && d.getDefectSum() == 0) ;
+        if( sorted.isEmpty() ) return ;
+        sorted.sort(Comparator.comparingInt(LineStatsBucket::getFactoryKey)
+                .thenComparingInt(LineStatsBucket::getLineKey)
+                .thenComparing(LineStatsBucket::getBucketStart));
+
+        List<Object[]> args = new ArrayList<>(sorted.size()) ;
+        for(LineStatsBucket d : sorted){
+            args.add(new Object[]{ d.getEventCount(), d.getDefectSum(), d.getFactoryKey(), d.getLineKey(), d.getBucketStart() }) ;
+        }
+        int[] counts = jdbcTemplate.batchUpdate(INCREMENT_SQL, args) ;
+
+        for(int i = 0; i < sorted.size(); i++){
+            if( counts[i] > 0 ) continue ;
+
+            LineStatsBucket d = sorted.get(i) ;
+            try {
+                jdbcTemplate.update(INSERT_SQL, d.getFactoryKey(), d.getLineKey(), d.getBucketStart(), d.getEventCount(), d.getDefectSum()) ;
+            } catch (DuplicateKeyException e) {
+                jdbcTemplate.update(INCREMENT_SQL, d.getEventCount(), d.getDefectSum(), d.getFactoryKey(), d.getLineKey(), d.getBucketStart()) ;
+            }
+        }
+    }
+
+    @Override
+    @Transactional
+    public void rebuild() {
+        // the join only finds interned ids, MachineDirectory.reload interns them before this transaction
+        jdbcTemplate.update("DELETE FROM line_stats_buckets") ;
+        jdbcTemplate.update(REBUILD_SQL) ;
+    }
+
+    @Override
+    public int deleteBefore(LocalDateTime cutoff) {
+        return jdbcTemplate.update("DELETE FROM line_stats_buckets WHERE bucket_start < ?", cutoff) ;
+    }
+}
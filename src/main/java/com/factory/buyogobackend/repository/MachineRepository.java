@@ -0,0 +1,9 @@
+package com.factory.buyogobackend.repository;
+
+import com.factory.buyogobackend.model.Machine;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MachineRepository extends JpaRepository<Machine, String> {
+}
@@ -0,0 +1,29 @@
+package com.factory.buyogobackend.repository;
+
+import com.factory.buyogobackend.repository.projection.MachineStatsProjection;
+import com.factory.buyogobackend.repository.projection.SliceTotals;
+import com.factory.buyogobackend.repository.projection.StatsProjection;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface MachineStatsBucketQueryRepository {
+
+    // buckets of machineId starting in [start, end) summed
+    StatsProjection sumBuckets(String machineId, LocalDateTime start, LocalDateTime end) ;
+
+    // every event has a bucket, so these are the machines that can have events before cutoff
+    List<String> findMachineIdsBefore(LocalDateTime cutoff) ;
+
+    // one row per machine that has buckets starting in [start, end)
+    List<MachineStatsProjection> sumBucketsByMachine(Collection<String> machineIds, LocalDateTime start, LocalDateTime end) ;
+
+    // buckets of all machineIds starting in [start, end) summed per slice of intervalMillis counted from origin
+    List<SliceTotals> sumBucketsBySlice(Collection<String> machineIds, LocalDateTime origin, long intervalMillis,
+                                        LocalDateTime start, LocalDateTime end) ;
+
+    // start of the latest non-empty bucket of every machine
+    Map<String, LocalDateTime> findLatestBuckets() ;
+}
@@ -0,0 +1,132 @@
+package com.factory.buyogobackend.repository;
+
+import com.factory.buyogobackend.repository.jdbc.ScanFanOut;
+import com.factory.buyogobackend.repository.keys.KeyDictionary;
+import com.factory.buyogobackend.repository.keys.KeyKind;
+import com.factory.buyogobackend.repository.projection.MachineStatsProjection;
+import com.factory.buyogobackend.repository.projection.MachineTotals;
+import com.factory.buyogobackend.repository.projection.SliceTotals;
+import com.factory.buyogobackend.repository.projection.StatsProjection;
+import com.factory.buyogobackend.repository.projection.StatsTotals;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+
+// Plain JDBC, one part per machine through ScanFanOut so each is a primary key range, see EventStatsQueryRepositoryImpl
+public class MachineStatsBucketQueryRepositoryImpl implements MachineStatsBucketQueryRepository {
+
+    private static final String SUM_SQL = """
+        SELECT
+            COALESCE(SUM(event_count), 0) AS events_count,
+            COALESCE(SUM(defect_sum), 0) AS defects_count
+        FROM machine_stats_buckets
+        WHERE machine_key = ?
+          AND bucket_start >= ?
+          AND bucket_start < ?
+    """;
+
+    private static final String SUM_BY_SLICE_SQL = """
+        SELECT slice, SUM(event_count) AS events_count, SUM(defect_sum) AS defects_count
+        FROM (
+            SELECT
+                DATEDIFF('MILLISECOND', CAST(? AS TIMESTAMP), bucket_start) / ? AS slice,
+                event_count,
+                defect_sum
+            FROM machine_stats_buckets
+            WHERE machine_key = ?
+              AND bucket_start >= ?
+              AND bucket_start < ?
+        ) t
+        GROUP BY slice
+    """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate ;
+
+    @Autowired
+    private KeyDictionary keyDictionary ;
+
+    @Autowired
+    private ScanFanOut scanFanOut ;
+
+    @Override
+    public StatsProjection sumBuckets(String machineId, LocalDateTime start, LocalDateTime end) {
+
+        int key = keyDictionary.keyOf(KeyKind.MACHINE, machineId) ;
+        if( key == KeyDictionary.NO_KEY ) return new StatsTotals(0, 0) ;
+        return sum(key, start, end) ;
+    }
+
+    @Override
+    public List<String> findMachineIdsBefore(LocalDateTime cutoff) {
+        return jdbcTemplate.query("SELECT DISTINCT machine_key FROM machine_stats_buckets WHERE bucket_start < ?",
+                (rs, i) -> keyDictionary.valueOf(KeyKind.MACHINE, rs.getInt(1)),
+                cutoff) ;
+    }
+
+    @Override
+    public List<MachineStatsProjection> sumBucketsByMachine(Collection<String> machineIds, LocalDateTime start, LocalDateTime end) {
+
+        Integer[] keys = keyDictionary.keysOf(KeyKind.MACHINE, machineIds) ;
+        if( keys.length == 0 ) return List.of() ;
+
+        List<Callable<StatsTotals>> parts = new ArrayList<>(keys.length) ;
+        for(Integer key : keys) parts.add(() -> sum(key, start, end)) ;
+
+        List<StatsTotals> sums = scanFanOut.run(parts) ;
+        Map<Integer, StatsTotals> byKey = new TreeMap<>() ;
+        for(int i = 0; i < keys.length; i++){
+            if( sums.get(i).getEventsCount() > 0 ) byKey.put(keys[i], sums.get(i)) ;
+        }
+
+        List<MachineStatsProjection> rows = new ArrayList<>(byKey.size()) ;
+        byKey.forEach((key, sum) -> rows.add(new MachineTotals(keyDictionary.valueOf(KeyKind.MACHINE, key),
+                sum.getEventsCount(), sum.getDefectsCount()))) ;
+        return rows ;
+    }
+
+    @Override
+    public List<SliceTotals> sumBucketsBySlice(Collection<String> machineIds, LocalDateTime origin, long intervalMillis,
+                                               LocalDateTime start, LocalDateTime end) {
+
+        Integer[] keys = keyDictionary.keysOf(KeyKind.MACHINE, machineIds) ;
+        if( keys.length == 0 ) return List.of() ;
+
+        List<Callable<List<SliceTotals>>> parts = new ArrayList<>(keys.length) ;
+        for(Integer key : keys){
+            parts.add(() -> jdbcTemplate.query(SUM_BY_SLICE_SQL,
+                    (rs, i) -> new SliceTotals(rs.getLong("slice"), rs.getLong("events_count"), rs.getLong("defects_count")),
+                    origin, intervalMillis, key, start, end)) ;
+        }
+
+        Map<Long, SliceTotals> bySlice = new TreeMap<>() ;
+        for(List<SliceTotals> part : scanFanOut.run(parts)){
+            for(SliceTotals row : part) bySlice.merge(row.getSlice(), row, SliceTotals::plus) ;
+        }
+        return new ArrayList<>(bySlice.values()) ;
+    }
+
+    @Override
+    public Map<String, LocalDateTime> findLatestBuckets() {
+        Map<String, LocalDateTime> latest = new HashMap<>() ;
+        jdbcTemplate.query("SELECT machine_key, MAX(bucket_start) FROM machine_stats_buckets WHERE event_count > 0 GROUP BY machine_key",
+                rs -> {
+                    latest.put(keyDictionary.valueOf(KeyKind.MACHINE, rs.getInt(1)), rs.getObject(2, LocalDateTime.class)) ;
+                });
+        return latest ;
+    }
+
+    private StatsTotals sum(int key, LocalDateTime start, LocalDateTime end) {
+        return jdbcTemplate.queryForObject(SUM_SQL,
+                (rs, i) -> new StatsTotals(rs.getLong("events_count"), rs.getLong("defects_count")),
+                key, start, end) ;
+    }
+}
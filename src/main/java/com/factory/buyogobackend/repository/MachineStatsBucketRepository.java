@@ -0,0 +1,12 @@
+package com.factory.buyogobackend.repository;
+
+import com.factory.buyogobackend.model.MachineStatsBucket;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+// Reads go through MachineStatsBucketQueryRepository: the machine column holds interned keys, see MachineStatsBucket
+@Repository
+public interface MachineStatsBucketRepository
+        extends JpaRepository<MachineStatsBucket, MachineStatsBucket.Key>, MachineStatsBucketWriteRepository,
+                MachineStatsBucketQueryRepository {
+}
@@ -0,0 +1,15 @@
+package com.factory.buyogobackend.repository;
+
+import com.factory.buyogobackend.model.MachineStatsBucket;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public interface MachineStatsBucketWriteRepository {
+
+    // adds eventCount / defectSum of every delta onto the stored bucket, creating missing buckets
+    void applyDeltas(Collection<MachineStatsBucket> deltas) ;
+
+    // drops the buckets of one machine starting before cutoff, returns the buckets deleted
+    int deleteBefore(String machineId, LocalDateTime cutoff) ;
+}
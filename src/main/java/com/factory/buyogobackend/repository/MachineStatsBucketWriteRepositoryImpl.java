@@ -0,0 +1,76 @@
+package com.factory.buyogobackend.repository;
+
+import com.factory.buyogobackend.model.MachineStatsBucket;
+import com.factory.buyogobackend.repository.keys.KeyDictionary;
+import com.factory.buyogobackend.repository.keys.KeyKind;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/*
+    Deltas are applied in (machineKey, bucketStart) order so concurrent batches lock buckets in the same order.
+    A bucket that does not exist yet is inserted; if a concurrent batch inserted it first the
+    duplicate key is caught and the delta is added with a plain UPDATE instead.
+*/
+public class MachineStatsBucketWriteRepositoryImpl implements MachineStatsBucketWriteRepository {
+
+    private static final String INCREMENT_SQL = """
+        UPDATE machine_stats_buckets
+           SET event_count = event_count + ?, defect_sum = defect_sum + ?
+         WHERE machine_key = ? AND bucket_start = ?
+    """;
+
+    private static final String INSERT_SQL = """
+        INSERT INTO machine_stats_buckets (machine_key, bucket_start, event_count, defect_sum)
+        VALUES (?, ?, ?, ?)
+    """;
+
+    private static final String DELETE_BEFORE_SQL = """
+        DELETE FROM machine_stats_buckets WHERE machine_key = ? AND bucket_start < ?
+    """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate ;
+
+    @Autowired
+    private KeyDictionary keyDictionary ;
+
+    @Override
+    public void applyDeltas(Collection<MachineStatsBucket> deltas) {
+
+        List<MachineStatsBucket> sorted = new ArrayList<>(deltas) ;
+        sorted.removeIf(d -> d.getEventCount() == 0 && d.getDefectSum() == 0) ;
+        if( sorted.isEmpty() ) return ;
+        sorted.sort(Comparator.comparingInt(MachineStatsBucket::getMachineKey)
+                .thenComparing(MachineStatsBucket::getBucketStart));
+
+        List<Object[]> args = new ArrayList<>(sorted.size()) ;
+        for(MachineStatsBucket d : sorted){
+            args.add(new Object[]{ d.getEventCount(), d.getDefectSum(), d.getMachineKey(), d.getBucketStart() }) ;
+        }
+        int[] counts = jdbcTemplate.batchUpdate(INCREMENT_SQL, args) ;
+
+        for(int i = 0; i < sorted.size(); i++){
+            if( counts[i] > 0 ) continue ;
+
+            MachineStatsBucket d = sorted.get(i) ;
+            try {
+                jdbcTemplate.update(INSERT_SQL, d.getMachineKey(), d.getBucketStart(), d.getEventCount(), d.getDefectSum()) ;
+            } catch (DuplicateKeyException e) {
+                jdbcTemplate.update(INCREMENT_SQL, d.getEventCount(), d.getDefectSum(), d.getMachineKey(), d.getBucketStart()) ;
+            }
+        }
+    }
+
+    @Override
+    public int deleteBefore(String machineId, LocalDateTime cutoff) {
+        int key = keyDictionary.keyOf(KeyKind.MACHINE, machineId) ;
+        return key == KeyDictionary.NO_KEY ? 0 : jdbcTemplate.update(DELETE_BEFORE_SQL, key, cutoff) ;
+    }
+}
@@ -0,0 +1,293 @@
+package com.factory.buyogobackend.repository.hot;
+
+import com.factory.buyogobackend.model.Event;
+import com.factory.buyogobackend.repository.jdbc.EventPartitions;
+import com.factory.buyogobackend.repository.jdbc.UpsertResult;
+import com.factory.buyogobackend.repository.keys.KeyDictionary;
+import com.factory.buyogobackend.repository.keys.KeyKind;
+import com.factory.buyogobackend.repository.projection.MachineStatsProjection;
+import com.factory.buyogobackend.repository.projection.MachineTotals;
+import com.factory.buyogobackend.repository.projection.SliceTotals;
+import com.factory.buyogobackend.repository.projection.StatsTotals;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/*
+    Hot tier: the last `events.hot-tier.hours` of events in memory, one MachineColumns per machine
+    at the index of its interned key, so windows inside that range are aggregated with a binary search and a primitive loop instead of
+    a query. Windows that start earlier go to the DB (rollups plus raw edges) as before.
+
+    Loaded from the recent day partitions once all singletons exist, i.e. before the web server takes requests,
+    and then fed with the inserted / updated / superseded events of every committed batch, the same
+    way the rollup buckets are. Like the buckets it only sees rows written through processBatch.
+    A minute scheduler moves the covered range forward and drops what fell out of it.
+
+    Costs about 12 bytes per recent event plus array slack.
+*/
+@Slf4j
+@Component
+public class HotEventTier implements SmartInitializingSingleton {
+
+    // %s: a day table of EventPartitions, read day by day in ascending order
+    private static final String LOAD_SQL = """
+        SELECT machine_key, event_time, defect_count FROM %s
+        WHERE event_time >= ?
+        ORDER BY machine_key, event_time
+    """;
+
+    @Value("${events.hot-tier.hours:72}")
+    private int hours ;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate ;
+
+    @Autowired
+    private KeyDictionary keyDictionary ;
+
+    @Autowired
+    private EventPartitions eventPartitions ;
+
+    // indexed by machine key, copied on write under growLock; slots are never replaced once set
+    private volatile MachineColumns[] byMachine = new MachineColumns[0] ;
+    private final Object growLock = new Object() ;
+
+    // every event at or after this time is in the tier
+    private volatile LocalDateTime coveredFrom = LocalDateTime.MAX ;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if( isEnabled() ) load() ;
+    }
+
+    public boolean isEnabled() {
+        return hours > 0 ;
+    }
+
+    public int load() {
+
+        coveredFrom = LocalDateTime.MAX ;
+        clearNow() ;
+        LocalDateTime from = LocalDateTime.now().minusHours(hours) ;
+        int[] count = {0} ;
+        for(LocalDate day : eventPartitions.from(from)){
+            String sql = LOAD_SQL.formatted(eventPartitions.table(day)) ;
+            jdbcTemplate.query(con -> {
+                var statement = con.prepareStatement(sql) ;
+                statement.setObject(1, from) ;
+                statement.setFetchSize(10_000) ;
+                return statement ;
+            }, rs -> {
+                int defects = rs.getInt(3) ;
+                columns(rs.getInt(1)).add(nanos(rs.getObject(2, LocalDateTime.class)), defects == -1 ? 0 : defects) ;
+                count[0]++ ;
+            });
+        }
+        coveredFrom = from ;
+
+        log.info("hot tier loaded, {} events since {}", count[0], from);
+        return count[0] ;
+    }
+
+    public boolean covers(LocalDateTime start) {
+        return !start.isBefore(coveredFrom) ;
+    }
+
+    // applies the batch once the surrounding transaction commits
+    public void apply(UpsertResult result) {
+
+        if( !isEnabled() ) return ;
+        if( result.getInserted().isEmpty() && result.getUpdated().isEmpty() ) return ;
+
+        if( TransactionSynchronizationManager.isSynchronizationActive() ) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyNow(result) ;
+                }
+            });
+        } else {
+            applyNow(result) ;
+        }
+    }
+
+    public StatsTotals stats(String machineId, LocalDateTime start, LocalDateTime end) {
+        long[] totals = new long[2] ;
+        MachineColumns columns = find(machineId) ;
+        if( columns != null ) {
+            synchronized (columns) {
+                columns.sumInto(nanos(start), nanos(end), totals) ;
+            }
+        }
+        return new StatsTotals(totals[0], totals[1]) ;
+    }
+
+    // one row per machine that has events in [start, end)
+    public List<MachineStatsProjection> statsByMachine(Collection<String> machineIds, LocalDateTime start, LocalDateTime end) {
+        long from = nanos(start) ;
+        long to = nanos(end) ;
+        List<MachineStatsProjection> rows = new ArrayList<>() ;
+        for(String machineId : machineIds){
+            MachineColumns columns = find(machineId) ;
+            if( columns == null ) continue ;
+            long[] totals = new long[2] ;
+            synchronized (columns) {
+                columns.sumInto(from, to, totals) ;
+            }
+            if( totals[0] > 0 ) rows.add(new MachineTotals(machineId, totals[0], totals[1])) ;
+        }
+        return rows ;
+    }
+
+    // events of all machineIds in [start, end) per slice of intervalMillis counted from start, empty slices absent
+    public List<SliceTotals> statsBySlice(Collection<String> machineIds, LocalDateTime start, LocalDateTime end,
+                                          long intervalMillis, int slices) {
+        long[] events = new long[slices] ;
+        long[] defects = new long[slices] ;
+        long from = nanos(start) ;
+        long to = nanos(end) ;
+        for(String machineId : machineIds){
+            MachineColumns columns = find(machineId) ;
+            if( columns == null ) continue ;
+            synchronized (columns) {
+                columns.sliceInto(from, intervalMillis * 1_000_000, from, to, events, defects) ;
+            }
+        }
+
+        List<SliceTotals> rows = new ArrayList<>() ;
+        for(int i = 0; i < slices; i++){
+            if( events[i] > 0 ) rows.add(new SliceTotals(i, events[i], defects[i])) ;
+        }
+        return rows ;
+    }
+
+    // drops events before cutoff without changing the covered range (retention deleted them from the DB too)
+    public void evictBefore(LocalDateTime cutoff) {
+        long before = nanos(cutoff) ;
+        for(MachineColumns columns : byMachine){
+            if( columns == null ) continue ;
+            synchronized (columns) {
+                columns.evictBefore(before) ;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${events.hot-tier.evict-interval-ms:60000}")
+    public void advance() {
+        if( !isEnabled() || coveredFrom.equals(LocalDateTime.MAX) ) return ;
+
+        // queries starting before the new bound go to the DB from here on
+        LocalDateTime from = LocalDateTime.now().minusHours(hours) ;
+        coveredFrom = from ;
+        evictBefore(from) ;
+    }
+
+    // forgets everything now and again after commit, the tier then covers an empty table.
+    // Columns are emptied rather than removed so a concurrent add never lands in a detached instance
+    public void clear() {
+        clearNow() ;
+        if( TransactionSynchronizationManager.isSynchronizationActive() ) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    clearNow() ;
+                }
+            });
+        }
+    }
+
+    public int size() {
+        int size = 0 ;
+        for(MachineColumns columns : byMachine){
+            if( columns == null ) continue ;
+            synchronized (columns) {
+                size += columns.size() ;
+            }
+        }
+        return size ;
+    }
+
+    private void clearNow() {
+        evictBefore(LocalDateTime.MAX) ;
+    }
+
+    private void applyNow(UpsertResult result) {
+        LocalDateTime from = coveredFrom ;
+        for(Event e : result.getSuperseded()){
+            LocalDateTime time = stored(e.getEventTime()) ;
+            if( time.isBefore(from) ) continue ;
+            MachineColumns columns = find(e.getMachineId()) ;
+            if( columns == null ) continue ;
+            synchronized (columns) {
+                columns.remove(nanos(time), defects(e)) ;
+            }
+        }
+        result.getInserted().forEach(e -> add(e, from)) ;
+        result.getUpdated().forEach(e -> add(e, from)) ;
+    }
+
+    private void add(Event e, LocalDateTime from) {
+        LocalDateTime time = stored(e.getEventTime()) ;
+        if( time.isBefore(from) ) return ;
+        MachineColumns columns = columns(keyDictionary.keyOf(KeyKind.MACHINE, e.getMachineId())) ;
+        synchronized (columns) {
+            columns.add(nanos(time), defects(e)) ;
+        }
+    }
+
+    private MachineColumns find(String machineId) {
+        int key = keyDictionary.keyOf(KeyKind.MACHINE, machineId) ;
+        MachineColumns[] columns = byMachine ;
+        return key < columns.length ? columns[key] : null ;
+    }
+
+    private MachineColumns columns(int key) {
+        MachineColumns[] current = byMachine ;
+        if( key < current.length && current[key] != null ) return current[key] ;
+
+        synchronized (growLock) {
+            current = byMachine ;
+            if( key < current.length && current[key] != null ) return current[key] ;
+
+            // a new machine is rare: always copy, so readers only ever see slots published with the array
+            int length = key < current.length ? current.length : Math.max(64, Math.max(key + 1, current.length * 2)) ;
+            MachineColumns[] grown = Arrays.copyOf(current, length) ;
+            grown[key] = new MachineColumns() ;
+            byMachine = grown ;
+            return grown[key] ;
+        }
+    }
+
+    private static int defects(Event e) {
+        return e.getDefectCount() == -1 ? 0 : e.getDefectCount() ;
+    }
+
+    // event_time is a TIMESTAMP(6): H2 rounds the written value half up to microseconds, while query
+    // bounds are compared at full precision. Superseded rows come back already rounded
+    private static LocalDateTime stored(LocalDateTime eventTime) {
+        return eventTime.plusNanos(500).truncatedTo(ChronoUnit.MICROS) ;
+    }
+
+    // epoch nanos of the LocalDateTime read as UTC, saturating outside the ~1677..2262 range
+    static long nanos(LocalDateTime time) {
+        long seconds = time.toEpochSecond(ZoneOffset.UTC) ;
+        if( seconds >= Long.MAX_VALUE / 1_000_000_000L ) return Long.MAX_VALUE ;
+        if( seconds <= Long.MIN_VALUE / 1_000_000_000L ) return Long.MIN_VALUE ;
+        return seconds * 1_000_000_000L + time.getNano() ;
+    }
+}
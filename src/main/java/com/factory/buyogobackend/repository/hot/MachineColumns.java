@@ -0,0 +1,106 @@
+package com.factory.buyogobackend.repository.hot;
+
+import java.util.Arrays;
+
+/*
+    The recent events of one machine as two parallel primitive columns sorted by eventTime:
+    epoch nanos and defect count (-1 stored as 0). Not thread safe, HotEventTier locks each instance.
+
+    Events mostly arrive close to now, so an insert is usually an append; an older event shifts the
+    tail of the columns.
+*/
+class MachineColumns {
+
+    private long[] times = new long[16] ;
+    private int[] defects = new int[16] ;
+    private int size ;
+
+    void add(long time, int defectCount) {
+        if( size == times.length ) {
+            times = Arrays.copyOf(times, size * 2) ;
+            defects = Arrays.copyOf(defects, size * 2) ;
+        }
+        int at = upperBound(time) ;
+        if( at < size ) {
+            System.arraycopy(times, at, times, at + 1, size - at) ;
+            System.arraycopy(defects, at, defects, at + 1, size - at) ;
+        }
+        times[at] = time ;
+        defects[at] = defectCount ;
+        size++ ;
+    }
+
+    // removes one event with exactly this time and defect count, false if there is none
+    boolean remove(long time, int defectCount) {
+        for(int i = lowerBound(time); i < size && times[i] == time; i++){
+            if( defects[i] != defectCount ) continue ;
+            System.arraycopy(times, i + 1, times, i, size - i - 1) ;
+            System.arraycopy(defects, i + 1, defects, i, size - i - 1) ;
+            size-- ;
+            return true ;
+        }
+        return false ;
+    }
+
+    // drops every event before `time`, returns how many
+    int evictBefore(long time) {
+        int n = lowerBound(time) ;
+        if( n == 0 ) return 0 ;
+        System.arraycopy(times, n, times, 0, size - n) ;
+        System.arraycopy(defects, n, defects, 0, size - n) ;
+        size -= n ;
+        if( size < times.length / 4 && times.length > 16 ) {
+            times = Arrays.copyOf(times, Math.max(16, size * 2)) ;
+            defects = Arrays.copyOf(defects, times.length) ;
+        }
+        return n ;
+    }
+
+    // adds the event count and defect sum of [from, to) to totals[0] / totals[1]
+    void sumInto(long from, long to, long[] totals) {
+        int lo = lowerBound(from) ;
+        int hi = lowerBound(to) ;
+        long sum = 0 ;
+        for(int i = lo; i < hi; i++){
+            sum += defects[i] ;
+        }
+        totals[0] += Math.max(0, hi - lo) ;
+        totals[1] += sum ;
+    }
+
+    // adds every event of [from, to) to slice (time - origin) / interval
+    void sliceInto(long origin, long interval, long from, long to, long[] events, long[] defectSums) {
+        int hi = lowerBound(to) ;
+        for(int i = lowerBound(from); i < hi; i++){
+            int slice = (int) ((times[i] - origin) / interval) ;
+            events[slice]++ ;
+            defectSums[slice] += defects[i] ;
+        }
+    }
+
+    int size() {
+        return size ;
+    }
+
+    // first index with times[i] >= time
+    private int lowerBound(long time) {
+        int lo = 0, hi = size ;
+        while( lo < hi ){
+            int mid = (lo + hi) >>> 1 ;
+            if( times[mid] < time ) lo = mid + 1 ;
+            else hi = mid ;
+        }
+        return lo ;
+    }
+
+    // first index with times[i] > time
+    private int upperBound(long time) {
+        int lo = 0, hi = size ;
+        while( lo < hi ){
+            int mid = (lo + hi) >>> 1 ;
+            if( times[mid] <= time ) lo = mid + 1 ;
+            else hi = mid ;
+        }
+        return lo ;
+    }
+}
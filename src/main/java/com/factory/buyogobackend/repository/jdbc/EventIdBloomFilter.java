@@ -0,0 +1,69 @@
+package com.factory.buyogobackend.repository.jdbc;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+    Lock free bloom filter over eventIds. Bits are only ever set, so a concurrent reader can miss an id
+    that is being added (it then falls back to the DB) but never reports a stored id as new once put()
+    has returned.
+
+    Sized for `expectedIds` at false positive rate `fpp`; past that the rate degrades gracefully.
+*/
+class EventIdBloomFilter {
+
+    private final AtomicLongArray words ;
+    private final long bitCount ;
+    private final int hashCount ;
+
+    EventIdBloomFilter(long expectedIds, double fpp) {
+        long bits = (long) Math.ceil(-expectedIds * Math.log(fpp) / (Math.log(2) * Math.log(2))) ;
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) / 64)) ;
+        this.words = new AtomicLongArray(wordCount) ;
+        this.bitCount = (long) wordCount * 64 ;
+        this.hashCount = (int) Math.max(1, Math.round((double) bitCount / expectedIds * Math.log(2))) ;
+    }
+
+    void put(String id) {
+        long h1 = hash(id) ;
+        long h2 = (h1 >>> 32) | 1 ;
+        for(int i = 0; i < hashCount; i++){
+            long bit = Math.floorMod(h1 + i * h2, bitCount) ;
+            int word = (int) (bit >>> 6) ;
+            long mask = 1L << bit ;
+            long current = words.get(word) ;
+            while( (current & mask) == 0 && !words.compareAndSet(word, current, current | mask) ){
+                current = words.get(word) ;
+            }
+        }
+    }
+
+    boolean mightContain(String id) {
+        long h1 = hash(id) ;
+        long h2 = (h1 >>> 32) | 1 ;
+        for(int i = 0; i < hashCount; i++){
+            long bit = Math.floorMod(h1 + i * h2, bitCount) ;
+            if( (words.get((int) (bit >>> 6)) & (1L << bit)) == 0 ) return false ;
+        }
+        return true ;
+    }
+
+    void clear() {
+        for(int i = 0; i < words.length(); i++){
+            words.set(i, 0) ;
+        }
+    }
+
+    long sizeInBytes() {
+        return (long) words.length() * 8 ;
+    }
+
+    private static long hash(String id) {
+        long h = 0xcbf29ce484222325L ;
+        for(int i = 0; i < id.length(); i++){
+            h = (h ^ id.charAt(i)) * 0x100000001b3L ;
+        }
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL ;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L ;
+        return h ^ (h >>> 33) ;
+    }
+}
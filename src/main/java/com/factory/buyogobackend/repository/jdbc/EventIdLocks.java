@@ -0,0 +1,119 @@
+package com.factory.buyogobackend.repository.jdbc;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/*
+    In-process lock table keyed by eventId.
+
+    A batch locks its ids in eventId order before it reads the stored rows and keeps them until its
+    transaction completes, so two batches that share ids are applied one after the other: the second
+    one reads the committed result of the first and the newest receivedTime wins. Batches with disjoint
+    ids never wait on each other. Unlike a fixed number of stripes, a large batch only blocks the ids it
+    actually contains.
+
+    Ids are only locked in ascending order within one call; a transaction that locks several
+    unordered groups (coalesced async batches) is protected from a deadlock by the wait timeout.
+*/
+@Component
+public class EventIdLocks {
+
+    private final ConcurrentHashMap<String, Lease> held = new ConcurrentHashMap<>() ;
+
+    @Value("${events.ingest.lock-timeout-ms:10000}")
+    private long timeoutMs ;
+
+    // ids must be sorted; returns the lease to release when there is no transaction to bind it to
+    public Lease lock(List<String> sortedIds) {
+
+        Lease lease = currentLease() ;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs) ;
+
+        try {
+            for(String id : sortedIds){
+                while( true ){
+                    Lease owner = held.putIfAbsent(id, lease) ;
+                    if( owner == null ) {
+                        lease.ids.add(id) ;
+                        break ;
+                    }
+                    if( owner == lease ) break ;
+                    awaitRelease(owner, id, deadline) ;
+                }
+            }
+        } catch (RuntimeException e) {
+            lease.close() ;
+            throw e ;
+        }
+        return lease ;
+    }
+
+    public int size() {
+        return held.size() ;
+    }
+
+    private Lease currentLease() {
+
+        if( !TransactionSynchronizationManager.isSynchronizationActive() ) return new Lease(false) ;
+
+        Lease lease = (Lease) TransactionSynchronizationManager.getResource(this) ;
+        if( lease != null ) return lease ;
+
+        Lease created = new Lease(true) ;
+        TransactionSynchronizationManager.bindResource(this, created) ;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(EventIdLocks.this) ;
+                release(created) ;
+            }
+        });
+        return created ;
+    }
+
+    private void awaitRelease(Lease owner, String id, long deadline) {
+        try {
+            long remaining = deadline - System.nanoTime() ;
+            if( remaining <= 0 || !owner.released.await(remaining, TimeUnit.NANOSECONDS) ) {
+                throw new CannotAcquireLockException("timed out waiting for a concurrent batch writing eventId " + id) ;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt() ;
+            throw new CannotAcquireLockException("interrupted waiting for eventId " + id, e) ;
+        }
+    }
+
+    private void release(Lease lease) {
+        for(String id : lease.ids){
+            held.remove(id, lease) ;
+        }
+        lease.ids.clear() ;
+        lease.released.countDown() ;
+    }
+
+    public final class Lease implements AutoCloseable {
+
+        private final boolean transactional ;
+        private final List<String> ids = new ArrayList<>() ;
+        private final CountDownLatch released = new CountDownLatch(1) ;
+
+        private Lease(boolean transactional) {
+            this.transactional = transactional ;
+        }
+
+        // a lease bound to a transaction is released after completion instead
+        @Override
+        public void close() {
+            if( !transactional ) release(this) ;
+        }
+    }
+}
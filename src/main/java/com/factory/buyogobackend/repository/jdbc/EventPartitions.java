@@ -0,0 +1,228 @@
+package com.factory.buyogobackend.repository.jdbc;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+
+/*
+    Day partitions of the events: the rows of every eventTime day live in their own table events_yyyyMMdd
+    with its own idx_machine_time, so an insert maintains one small index and a range scan reads only
+    the days overlapping its window. Retention drops whole day tables instead of deleting rows.
+
+    event_days holds one row per stored eventId: its day plus the payload hash and receivedTime the
+    dedup decision needs. It keeps eventIds unique across days, tells the write path which day holds an
+    id without searching the days, and is what the known-ids warm up reads. The events view (UNION ALL
+    of the days) serves JPA reads of single events and ad-hoc queries; the stats queries and the write
+    path go to the day tables directly.
+
+    H2 commits the open transaction on DDL, so days are created in a transaction of their own, before
+    the batch that writes them (like interned keys); writers inside a transaction only look the table
+    up (table). create waits for other creators while taking a connection, so callers must not hold
+    one (no open-in-view). Days before the horizon were dropped by retention and are never created again.
+*/
+@Slf4j
+@Component
+public class EventPartitions {
+
+    private static final String TABLE_PREFIX = "events_" ;
+    private static final DateTimeFormatter DAY_SUFFIX = DateTimeFormatter.ofPattern("uuuuMMdd") ;
+
+    private static final String EVENT_DAYS_DDL = """
+        CREATE TABLE IF NOT EXISTS event_days (
+            event_id      VARCHAR(255) PRIMARY KEY,
+            event_day     DATE NOT NULL,
+            received_time TIMESTAMP(6) NOT NULL,
+            payload_hash  BIGINT NOT NULL
+        )
+    """;
+
+    private static final String DAY_DDL = """
+        CREATE TABLE IF NOT EXISTS %s (
+            event_id      VARCHAR(255) PRIMARY KEY,
+            machine_key   INTEGER NOT NULL,
+            event_time    TIMESTAMP(6) NOT NULL,
+            received_time TIMESTAMP(6) NOT NULL,
+            duration_ms   INTEGER NOT NULL,
+            defect_count  INTEGER NOT NULL,
+            payload_hash  BIGINT NOT NULL
+        )
+    """;
+
+    private static final String COLUMNS = "event_id, machine_key, event_time, received_time, duration_ms, defect_count, payload_hash" ;
+
+    // the view's shape while there is no day yet
+    private static final String NO_DAYS = """
+        SELECT CAST(NULL AS VARCHAR(255)) AS event_id, CAST(NULL AS INTEGER) AS machine_key,
+               CAST(NULL AS TIMESTAMP(6)) AS event_time, CAST(NULL AS TIMESTAMP(6)) AS received_time,
+               CAST(NULL AS INTEGER) AS duration_ms, CAST(NULL AS INTEGER) AS defect_count,
+               CAST(NULL AS BIGINT) AS payload_hash
+         WHERE FALSE
+    """;
+
+    private static final String TABLES_SQL = """
+        SELECT LOWER(TABLE_NAME) FROM INFORMATION_SCHEMA.TABLES
+         WHERE TABLE_SCHEMA = SCHEMA() AND TABLE_TYPE = 'BASE TABLE'
+    """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate ;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager ;
+
+    private final NavigableSet<LocalDate> days = new ConcurrentSkipListSet<>() ;
+
+    // first day that is still kept
+    private volatile LocalDate horizon = LocalDate.MIN ;
+
+    @PostConstruct
+    void load() {
+        ddl(List.of(EVENT_DAYS_DDL, "CREATE INDEX IF NOT EXISTS idx_event_days_day ON event_days (event_day)")) ;
+
+        boolean unpartitioned = false ;
+        for(String table : jdbcTemplate.queryForList(TABLES_SQL, String.class)){
+            if( table.equals("events") ) unpartitioned = true ;
+            LocalDate day = dayOfTable(table) ;
+            if( day != null ) days.add(day) ;
+        }
+        if( unpartitioned ) partitionEventsTable() ;
+        recreateView() ;
+        log.info("{} event day partitions{}", days.size(), days.isEmpty() ? "" : ", " + days.first() + " to " + days.last());
+    }
+
+    public static LocalDate dayOf(LocalDateTime eventTime) {
+        return eventTime.toLocalDate() ;
+    }
+
+    // creates the missing, not expired days, each in a transaction of its own; run outside the caller's transaction
+    public void create(Collection<LocalDate> eventDays) {
+        List<LocalDate> missing = new ArrayList<>() ;
+        for(LocalDate day : eventDays){
+            if( !days.contains(day) && !isExpired(day) ) missing.add(day) ;
+        }
+        if( missing.isEmpty() ) return ;
+
+        synchronized (this) {
+            if( createTables(missing) ) recreateView() ;
+        }
+    }
+
+    // table of a day created before the caller's transaction, for writers inside it
+    public String table(LocalDate day) {
+        if( !days.contains(day) ) throw new IllegalStateException("event day " + day + " has no partition") ;
+        return tableName(day) ;
+    }
+
+    public boolean exists(LocalDate day) {
+        return days.contains(day) ;
+    }
+
+    // events of a day before the horizon are not stored any more
+    public boolean isExpired(LocalDate day) {
+        return day.isBefore(horizon) ;
+    }
+
+    // existing days that can hold events in [start, end), ascending
+    public List<LocalDate> overlapping(LocalDateTime start, LocalDateTime end) {
+        if( !start.isBefore(end) ) return List.of() ;
+        return new ArrayList<>(days.subSet(dayOf(start), true, dayOf(end.minusNanos(1)), true)) ;
+    }
+
+    // existing days that can hold events at or after from, ascending
+    public List<LocalDate> from(LocalDateTime from) {
+        return new ArrayList<>(days.tailSet(dayOf(from), true)) ;
+    }
+
+    // raises the horizon to cutoff and drops every day before it, returns the days dropped.
+    // A batch still writing such a day holds its table lock, the DROP waits for its commit
+    public List<LocalDate> dropBefore(LocalDate cutoff) {
+        synchronized (this) {
+            if( cutoff.isAfter(horizon) ) horizon = cutoff ;
+            List<LocalDate> dropped = new ArrayList<>(days.headSet(cutoff, false)) ;
+            if( dropped.isEmpty() ) return dropped ;
+
+            // out of the view first, so the view never names a dropped table
+            dropped.forEach(days::remove) ;
+            recreateView() ;
+            ddl(dropped.stream().map(day -> "DROP TABLE IF EXISTS " + tableName(day)).toList()) ;
+            return dropped ;
+        }
+    }
+
+    public List<LocalDate> all() {
+        return new ArrayList<>(days) ;
+    }
+
+    private boolean createTables(Collection<LocalDate> missing) {
+        boolean created = false ;
+        for(LocalDate day : new TreeSet<>(missing)){
+            if( days.contains(day) || isExpired(day) ) continue ;
+            String table = tableName(day) ;
+            ddl(List.of(DAY_DDL.formatted(table),
+                    "CREATE INDEX IF NOT EXISTS " + table + "_machine_time ON " + table + " (machine_key, event_time)")) ;
+            days.add(day) ;
+            created = true ;
+        }
+        return created ;
+    }
+
+    private void recreateView() {
+        String union = days.isEmpty()
+                ? NO_DAYS
+                : days.stream().map(day -> "SELECT " + COLUMNS + " FROM " + tableName(day)).collect(Collectors.joining(" UNION ALL ")) ;
+        ddl(List.of("CREATE OR REPLACE VIEW events AS " + union)) ;
+    }
+
+    // a database written before the partitioning: its events table is split into days once, on startup
+    private void partitionEventsTable() {
+        List<LocalDate> legacyDays = jdbcTemplate.queryForList(
+                "SELECT DISTINCT CAST(event_time AS DATE) FROM events", LocalDate.class) ;
+        // the view replaces the table once it is gone, see load
+        createTables(legacyDays) ;
+        TransactionTemplate tx = new TransactionTemplate(transactionManager) ;
+        tx.executeWithoutResult(status -> {
+            for(LocalDate day : legacyDays){
+                jdbcTemplate.update("INSERT INTO " + tableName(day) + " (" + COLUMNS + ") SELECT " + COLUMNS
+                        + " FROM events WHERE event_time >= ? AND event_time < ?", day.atStartOfDay(), day.plusDays(1).atStartOfDay()) ;
+            }
+            jdbcTemplate.update("""
+                INSERT INTO event_days (event_id, event_day, received_time, payload_hash)
+                SELECT event_id, CAST(event_time AS DATE), received_time, payload_hash FROM events
+            """) ;
+        });
+        ddl(List.of("DROP TABLE events")) ;
+        log.info("events table split into {} day partitions", legacyDays.size());
+    }
+
+    private void ddl(List<String> statements) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager) ;
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW) ;
+        tx.executeWithoutResult(status -> statements.forEach(jdbcTemplate::execute)) ;
+    }
+
+    private static String tableName(LocalDate day) {
+        return TABLE_PREFIX + day.format(DAY_SUFFIX) ;
+    }
+
+    private static LocalDate dayOfTable(String table) {
+        String suffix = table.substring(Math.min(table.length(), TABLE_PREFIX.length())) ;
+        if( !table.startsWith(TABLE_PREFIX) || !suffix.matches("\\d{8}") ) return null ;
+        return LocalDate.parse(suffix, DAY_SUFFIX) ;
+    }
+}
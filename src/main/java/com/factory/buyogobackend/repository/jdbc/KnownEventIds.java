@@ -0,0 +1,129 @@
+package com.factory.buyogobackend.repository.jdbc;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+    In-memory index of stored eventIds that lets upsertBatch skip the existing-row SELECT:
+
+      - a bloom filter of every stored id: an id it does not contain is definitely new and goes
+        straight to the INSERT ... WHERE NOT EXISTS
+      - an exact LRU of recently written id -> payload hash: a retransmission of the stored payload
+        is counted as deduped without touching the DB
+
+    Both are filled from event_days on startup and after every commit. A false positive of the
+    filter only costs the usual lookup; an id the filter misses (a row written outside this process)
+    makes the INSERT match nothing and is re-resolved by the normal retry path.
+    Until the warm up scan has finished every id is treated as possibly stored.
+*/
+@Slf4j
+@Component
+public class KnownEventIds {
+
+    private final EventIdBloomFilter filter ;
+    private final LinkedHashMap<String, Long> recent ;
+
+    private volatile boolean ready ;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate ;
+
+    public KnownEventIds(@Value("${events.known-ids.expected-ids:10000000}") long expectedIds,
+                         @Value("${events.known-ids.false-positive-rate:0.01}") double fpp,
+                         @Value("${events.known-ids.recent-capacity:100000}") int recentCapacity) {
+        this.filter = new EventIdBloomFilter(expectedIds, fpp) ;
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > recentCapacity ;
+            }
+        };
+    }
+
+    // void: Spring publishes a listener's return value as a new event
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        reload() ;
+    }
+
+    // returns the number of ids loaded
+    public int reload() {
+
+        ready = false ;
+        filter.clear() ;
+        int[] count = {0} ;
+        jdbcTemplate.query(con -> {
+            var statement = con.prepareStatement("SELECT event_id FROM event_days") ;
+            statement.setFetchSize(10_000) ;
+            return statement ;
+        }, rs -> {
+            filter.put(rs.getString(1)) ;
+            count[0]++ ;
+        });
+        ready = true ;
+
+        log.info("known event ids loaded, {} ids, bloom filter {} KB", count[0], filter.sizeInBytes() / 1024);
+        return count[0] ;
+    }
+
+    public boolean isDefinitelyNew(String eventId) {
+        return ready && !filter.mightContain(eventId) ;
+    }
+
+    // payload hash of the stored row if it was written recently, else null
+    public synchronized Long recentPayloadHash(String eventId) {
+        return recent.get(eventId) ;
+    }
+
+    // records the stored payload of each id once the surrounding transaction commits
+    public void record(Map<String, Long> payloadHashes) {
+
+        if( payloadHashes.isEmpty() ) return ;
+
+        if( TransactionSynchronizationManager.isSynchronizationActive() ) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    put(payloadHashes) ;
+                }
+            });
+        } else {
+            put(payloadHashes) ;
+        }
+    }
+
+    // forgets the recent payloads now and again after commit, a stale entry would dedupe a deleted row
+    public void clear() {
+
+        clearRecent() ;
+        if( TransactionSynchronizationManager.isSynchronizationActive() ) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    clearRecent() ;
+                }
+            });
+        }
+    }
+
+    private void put(Map<String, Long> payloadHashes) {
+        payloadHashes.keySet().forEach(filter::put) ;
+        synchronized (this) {
+            recent.putAll(payloadHashes) ;
+        }
+    }
+
+    private synchronized void clearRecent() {
+        recent.clear() ;
+    }
+}
@@ -0,0 +1,143 @@
+package com.factory.buyogobackend.repository.jdbc;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+    Runs the parts of a raw events scan, each one machine over one time range, so every part is a
+    single idx_machine_time range. H2 only seeks the machine column for a machine list (= ANY / IN)
+    and then reads each machine's whole history, however narrow the window.
+
+    Scans of at least `min-parts` parts go to a bounded pool, each part on its own connection outside
+    any caller transaction; smaller ones run on the calling thread. The pool is capped at half the
+    JDBC pool so scans never starve the write path of connections.
+*/
+@Slf4j
+@Component
+public class ScanFanOut {
+
+    // 0 = one per available processor, 1 = always on the calling thread
+    @Value("${events.query.fan-out.threads:0}")
+    private int threads ;
+
+    @Value("${events.query.fan-out.min-parts:8}")
+    private int minParts ;
+
+    @Value("${events.query.fan-out.slice-hours:24}")
+    private int sliceHours ;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int connectionPoolSize ;
+
+    private ExecutorService pool ;
+
+    @PostConstruct
+    void start() {
+        if( threads <= 0 ) threads = Runtime.getRuntime().availableProcessors() ;
+        threads = Math.min(threads, Math.max(1, connectionPoolSize / 2)) ;
+        if( threads < 2 ) return ;
+
+        AtomicInteger threadNo = new AtomicInteger() ;
+        pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "stats-scan-" + threadNo.incrementAndGet()) ;
+            t.setDaemon(true) ;
+            return t ;
+        });
+        log.info("stats scans fan out over {} threads from {} parts", threads, minParts);
+    }
+
+    @PreDestroy
+    void stop() {
+        if( pool != null ) pool.shutdownNow() ;
+    }
+
+    // [start, end) cut into consecutive ranges of at most slice-hours
+    public List<LocalDateTime[]> slices(LocalDateTime start, LocalDateTime end) {
+        Duration slice = Duration.ofHours(sliceHours) ;
+        List<LocalDateTime[]> ranges = new ArrayList<>() ;
+        LocalDateTime from = start ;
+        while( true ){
+            LocalDateTime to = from.plus(slice) ;
+            if( !to.isBefore(end) ) {
+                ranges.add(new LocalDateTime[]{ from, end }) ;
+                return ranges ;
+            }
+            ranges.add(new LocalDateTime[]{ from, to }) ;
+            from = to ;
+        }
+    }
+
+    // [start, end) cut at origin + k * alignMillis, each range spanning whole multiples of alignMillis
+    // of at least slice-hours (except the ends), so a range never splits one aligned slice
+    public List<LocalDateTime[]> alignedSlices(LocalDateTime origin, long alignMillis, LocalDateTime start, LocalDateTime end) {
+        long sliceMillis = Duration.ofHours(sliceHours).toMillis() ;
+        long step = Math.max(1, (sliceMillis + alignMillis - 1) / alignMillis) * alignMillis ;
+
+        List<LocalDateTime[]> ranges = new ArrayList<>() ;
+        long startOffset = Duration.between(origin, start).toMillis() ;
+        LocalDateTime from = start ;
+        LocalDateTime cut = origin.plus(Duration.ofMillis((Math.floorDiv(startOffset, step) + 1) * step)) ;
+        while( cut.isBefore(end) ){
+            ranges.add(new LocalDateTime[]{ from, cut }) ;
+            from = cut ;
+            cut = cut.plus(Duration.ofMillis(step)) ;
+        }
+        ranges.add(new LocalDateTime[]{ from, end }) ;
+        return ranges ;
+    }
+
+    // results in part order
+    public <T> List<T> run(List<Callable<T>> parts) {
+
+        List<T> results = new ArrayList<>(parts.size()) ;
+        if( pool == null || parts.size() < minParts ) {
+            for(Callable<T> part : parts) results.add(call(part)) ;
+            return results ;
+        }
+
+        List<Future<T>> futures = new ArrayList<>(parts.size()) ;
+        try {
+            for(Callable<T> part : parts) futures.add(pool.submit(part)) ;
+            for(Future<T> future : futures) results.add(await(future)) ;
+        } finally {
+            futures.forEach(f -> f.cancel(true)) ;
+        }
+        return results ;
+    }
+
+    private static <T> T call(Callable<T> part) {
+        try {
+            return part.call() ;
+        } catch (RuntimeException e) {
+            throw e ;
+        } catch (Exception e) {
+            throw new IllegalStateException(e) ;
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get() ;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt() ;
+            throw new IllegalStateException("interrupted while scanning events", e) ;
+        } catch (ExecutionException e) {
+            if( e.getCause() instanceof RuntimeException cause ) throw cause ;
+            throw new IllegalStateException(e.getCause()) ;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.factory.buyogobackend.repository.jdbc;
+
+import com.factory.buyogobackend.model.Event;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class UpsertResult {
+
+    private List<Event> inserted ;
+    private List<Event> updated ;
+    // stored version replaced by each entry of updated, same index
+    private List<Event> superseded ;
+    private int deduped ;
+    private int ignored ;
+}
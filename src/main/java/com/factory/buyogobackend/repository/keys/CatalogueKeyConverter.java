@@ -0,0 +1,46 @@
+package com.factory.buyogobackend.repository.keys;
+
+import jakarta.persistence.AttributeConverter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/*
+    Maps the factoryId / lineId of a Machine to its key column. Machines are a small catalogue written
+    through JPA, so a new id is interned here, during the flush: its key insert runs in a transaction of
+    its own and takes a second pooled connection, which is fine for the rare catalogue writes but is why
+    the event write path interns before its transaction instead.
+*/
+public abstract class CatalogueKeyConverter implements AttributeConverter<String, Integer> {
+
+    private final KeyKind kind ;
+
+    // provider, because Hibernate creates converters while the EntityManagerFactory is being built
+    @Autowired
+    private ObjectProvider<KeyDictionary> keyDictionary ;
+
+    protected CatalogueKeyConverter(KeyKind kind) {
+        this.kind = kind ;
+    }
+
+    @Override
+    public Integer convertToDatabaseColumn(String externalId) {
+        return externalId == null ? null : keyDictionary.getObject().intern(kind, externalId) ;
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer key) {
+        return key == null ? null : keyDictionary.getObject().valueOf(kind, key) ;
+    }
+
+    public static class Factory extends CatalogueKeyConverter {
+        public Factory() {
+            super(KeyKind.FACTORY) ;
+        }
+    }
+
+    public static class Line extends CatalogueKeyConverter {
+        public Line() {
+            super(KeyKind.LINE) ;
+        }
+    }
+}
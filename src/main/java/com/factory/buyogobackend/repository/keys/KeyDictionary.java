@@ -0,0 +1,192 @@
+package com.factory.buyogobackend.repository.keys;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+    Interned ids: events and the rollup tables store a machineId, factoryId or lineId as a small integer
+    key (id_keys), so rows and idx_machine_time carry 4 bytes instead of the string and the in-memory
+    tiers can index machines by array position. The API, the services and the caches keep the external
+    ids; they are translated here, by the JPA converters and the JDBC fragments.
+
+    Keys increase per kind, starting at 1, and are never reused or deleted (a failed insert leaves a gap).
+    The table is read in full on first use; this process is the only writer of the embedded database, so
+    an id missing afterwards was never stored, and keyOf answers NO_KEY without a query.
+
+    New ids are written in their own short transaction, before the caller's batch uses them, so a batch
+    that rolls back can not leave a key in memory that the table does not have. internAll is meant to run
+    before the caller opens its transaction (processBatch, MachineDirectory.reload): inside one the insert
+    would need a second pooled connection. Writers inside a transaction only look keys up (requireKey).
+    Keys are reserved under the kind's lock, the insert itself runs outside it; a thread that needs an
+    id another thread is inserting waits for that insert instead.
+*/
+@Slf4j
+@Component
+public class KeyDictionary {
+
+    public static final int NO_KEY = 0 ;
+
+    private static final String INSERT_SQL = """
+        INSERT INTO id_keys (kind, key_id, external_id) VALUES (?, ?, ?)
+    """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate ;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager ;
+
+    private final Map<KeyKind, Dictionary> dictionaries = new EnumMap<>(KeyKind.class) ;
+
+    private volatile boolean loaded ;
+
+    public KeyDictionary() {
+        for(KeyKind kind : KeyKind.values()) dictionaries.put(kind, new Dictionary()) ;
+    }
+
+    // key of an id that is about to be stored, assigned and written on first sight
+    public int intern(KeyKind kind, String externalId) {
+        internAll(kind, List.of(externalId)) ;
+        return keyOf(kind, externalId) ;
+    }
+
+    // assigns and writes keys for the ids not stored yet, in one transaction of their own
+    public void internAll(KeyKind kind, Collection<String> externalIds) {
+
+        Dictionary d = dictionary(kind) ;
+        Set<String> missing = new LinkedHashSet<>() ;
+        for(String id : externalIds){
+            if( id != null && !d.keys.containsKey(id) ) missing.add(id) ;
+        }
+        if( missing.isEmpty() ) return ;
+
+        Map<String, Integer> owned = new LinkedHashMap<>() ;
+        List<CompletableFuture<Integer>> others = new ArrayList<>() ;
+        synchronized (d) {
+            for(String id : missing){
+                if( d.keys.containsKey(id) ) continue ;
+                CompletableFuture<Integer> inFlight = d.inFlight.get(id) ;
+                if( inFlight != null ) {
+                    others.add(inFlight) ;
+                    continue ;
+                }
+                owned.put(id, d.next++) ;
+                d.inFlight.put(id, new CompletableFuture<>()) ;
+            }
+        }
+
+        if( !owned.isEmpty() ) {
+            List<Object[]> args = new ArrayList<>(owned.size()) ;
+            owned.forEach((id, key) -> args.add(new Object[]{ kind.name(), key, id })) ;
+            try {
+                TransactionTemplate tx = new TransactionTemplate(transactionManager) ;
+                tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW) ;
+                tx.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, args)) ;
+            } catch (RuntimeException e) {
+                synchronized (d) {
+                    owned.keySet().forEach(id -> d.inFlight.remove(id).completeExceptionally(e)) ;
+                }
+                throw e ;
+            }
+            synchronized (d) {
+                owned.forEach((id, key) -> {
+                    d.put(key, id) ;
+                    d.inFlight.remove(id).complete(key) ;
+                });
+            }
+        }
+
+        for(CompletableFuture<Integer> inFlight : others){
+            try {
+                inFlight.join() ;
+            } catch (CompletionException e) {
+                throw new IllegalStateException("interning " + kind + " keys failed in another thread", e.getCause()) ;
+            }
+        }
+    }
+
+    // key of an id interned before the caller's transaction, for writers inside it
+    public int requireKey(KeyKind kind, String externalId) {
+        int key = keyOf(kind, externalId) ;
+        if( key == NO_KEY ) throw new IllegalStateException(kind + " id " + externalId + " was not interned before the write") ;
+        return key ;
+    }
+
+    // key of a stored id, NO_KEY when it was never stored (nothing can match it)
+    public int keyOf(KeyKind kind, String externalId) {
+        Integer key = dictionary(kind).keys.get(externalId) ;
+        return key == null ? NO_KEY : key ;
+    }
+
+    // keys of the ids that were ever stored, in no particular order; for = ANY(?) parameters
+    public Integer[] keysOf(KeyKind kind, Collection<String> externalIds) {
+        Dictionary d = dictionary(kind) ;
+        List<Integer> keys = new ArrayList<>(externalIds.size()) ;
+        for(String id : externalIds){
+            Integer key = d.keys.get(id) ;
+            if( key != null ) keys.add(key) ;
+        }
+        return keys.toArray(new Integer[0]) ;
+    }
+
+    public String valueOf(KeyKind kind, int key) {
+        String[] values = dictionary(kind).values ;
+        return key > 0 && key < values.length ? values[key] : null ;
+    }
+
+    public int size(KeyKind kind) {
+        return dictionary(kind).keys.size() ;
+    }
+
+    private Dictionary dictionary(KeyKind kind) {
+        if( !loaded ) load() ;
+        return dictionaries.get(kind) ;
+    }
+
+    private synchronized void load() {
+        if( loaded ) return ;
+        jdbcTemplate.query("SELECT kind, key_id, external_id FROM id_keys", rs -> {
+            dictionaries.get(KeyKind.valueOf(rs.getString(1))).put(rs.getInt(2), rs.getString(3)) ;
+        });
+        loaded = true ;
+        dictionaries.forEach((kind, d) -> log.info("{} keys loaded: {}", kind, d.keys.size()));
+    }
+
+    // one kind; writers hold its lock, readers go lock free through the map and the published array
+    private static final class Dictionary {
+
+        final Map<String, Integer> keys = new ConcurrentHashMap<>() ;
+        volatile String[] values = new String[0] ;
+        int next = 1 ;
+        // ids being inserted by some thread, completed with their key once committed
+        final Map<String, CompletableFuture<Integer>> inFlight = new HashMap<>() ;
+
+        void put(int key, String externalId) {
+            String[] current = values ;
+            if( key >= current.length ) current = Arrays.copyOf(current, Math.max(16, Math.max(key + 1, current.length * 2))) ;
+            current[key] = externalId ;
+            values = current ;
+            keys.put(externalId, key) ;
+            next = Math.max(next, key + 1) ;
+        }
+    }
+}
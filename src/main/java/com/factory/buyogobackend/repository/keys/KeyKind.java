@@ -0,0 +1,8 @@
+package com.factory.buyogobackend.repository.keys;
+
+// the external id spaces KeyDictionary interns, each with its own dense key range
+public enum KeyKind {
+    MACHINE,
+    FACTORY,
+    LINE
+}
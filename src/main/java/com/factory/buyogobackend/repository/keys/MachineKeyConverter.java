@@ -0,0 +1,30 @@
+package com.factory.buyogobackend.repository.keys;
+
+import jakarta.persistence.AttributeConverter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/*
+    Maps Event.machineId to its key column for JPA reads.
+    Writes go through the JDBC fragments, which intern new ids before their transaction; converting an
+    id that was never interned fails instead of storing NO_KEY.
+
+    JPA does not convert id attributes, so the rollup tables, whose keys are part of their ids,
+    are only read and written through their JDBC fragments.
+*/
+public class MachineKeyConverter implements AttributeConverter<String, Integer> {
+
+    // provider, because Hibernate creates converters while the EntityManagerFactory is being built
+    @Autowired
+    private ObjectProvider<KeyDictionary> keyDictionary ;
+
+    @Override
+    public Integer convertToDatabaseColumn(String machineId) {
+        return machineId == null ? null : keyDictionary.getObject().requireKey(KeyKind.MACHINE, machineId) ;
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer key) {
+        return key == null ? null : keyDictionary.getObject().valueOf(KeyKind.MACHINE, key) ;
+    }
+}
@@ -0,0 +1,18 @@
+package com.factory.buyogobackend.repository.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// TopDefectLineProjection assembled in memory, e.g. from line buckets plus raw edges
+@Getter
+@AllArgsConstructor
+public class LineTotals implements TopDefectLineProjection {
+
+    private String lineId ;
+    private long totalDefects ;
+    private long eventCount ;
+
+    public LineTotals plus(TopDefectLineProjection other) {
+        return new LineTotals(lineId, totalDefects + other.getTotalDefects(), eventCount + other.getEventCount()) ;
+    }
+}
@@ -0,0 +1,6 @@
+package com.factory.buyogobackend.repository.projection;
+
+public interface MachineStatsProjection extends StatsProjection {
+
+    String getMachineId() ;
+}
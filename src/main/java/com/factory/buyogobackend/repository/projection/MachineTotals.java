@@ -0,0 +1,13 @@
+package com.factory.buyogobackend.repository.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class MachineTotals implements MachineStatsProjection {
+
+    private String machineId ;
+    private long eventsCount ;
+    private long defectsCount ;
+}
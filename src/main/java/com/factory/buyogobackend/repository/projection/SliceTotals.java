@@ -0,0 +1,19 @@
+package com.factory.buyogobackend.repository.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// totals of one slice of a series window, slice = (time - origin) / interval
+@Getter
+@AllArgsConstructor
+public class SliceTotals implements StatsProjection {
+
+    private long slice ;
+    private long eventsCount ;
+    private long defectsCount ;
+
+    // same slice, counted by another part of a split scan
+    public SliceTotals plus(SliceTotals other) {
+        return new SliceTotals(slice, eventsCount + other.eventsCount, defectsCount + other.defectsCount) ;
+    }
+}
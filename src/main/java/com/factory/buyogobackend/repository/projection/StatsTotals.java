@@ -0,0 +1,17 @@
+package com.factory.buyogobackend.repository.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// StatsProjection assembled in memory, e.g. from rollup buckets plus raw edges
+@Getter
+@AllArgsConstructor
+public class StatsTotals implements StatsProjection {
+
+    private long eventsCount ;
+    private long defectsCount ;
+
+    public StatsTotals plus(StatsProjection other) {
+        return new StatsTotals(eventsCount + other.getEventsCount(), defectsCount + other.getDefectsCount()) ;
+    }
+}
@@ -0,0 +1,185 @@
+package com.factory.buyogobackend.service;
+
+import com.factory.buyogobackend.dto.BatchResponse;
+import com.factory.buyogobackend.dto.BatchStatusResponse;
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.dto.Rejection;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+    Write-behind ingestion: batches are acknowledged once they are in a bounded in-process queue and
+    written later by a small pool of writers.
+
+    A writer takes every batch waiting in the queue (up to max-coalesce) and writes them in one
+    transaction, each still through processBatch so every batch gets its own exact BatchResponse.
+    If that transaction fails the batches are retried one per transaction so one bad batch cannot
+    fail its neighbours.
+
+    Batches are validated before they are queued (EventService.validate): the rejections are returned
+    with the acknowledgement and added to the final BatchResponse, only the valid events are queued.
+    A batch without a valid event is never queued, it completes at once.
+
+    receivedTime is taken when the batch is validated, not when it is written.
+    Queued batches live only in memory and are lost if the process stops.
+*/
+@Slf4j
+@Service
+public class AsyncBatchIngestor {
+
+    public static final String QUEUED = "QUEUED" ;
+    public static final String COMPLETED = "COMPLETED" ;
+    public static final String FAILED = "FAILED" ;
+
+    @Autowired
+    private EventService eventService ;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager ;
+
+    @Value("${events.ingest.async.writers:2}")
+    private int writerCount ;
+
+    @Value("${events.ingest.async.max-coalesce:8}")
+    private int maxCoalesce ;
+
+    private final BlockingQueue<QueuedBatch> queue ;
+    private final Map<String, BatchStatusResponse> statuses ;
+
+    private TransactionTemplate transactionTemplate ;
+    private ExecutorService writers ;
+
+    public AsyncBatchIngestor(@Value("${events.ingest.async.queue-capacity:100}") int queueCapacity,
+                              @Value("${events.ingest.async.retained-results:10000}") int retainedResults) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity) ;
+        this.statuses = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BatchStatusResponse> eldest) {
+                return size() > retainedResults ;
+            }
+        };
+    }
+
+    @PostConstruct
+    void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager) ;
+
+        AtomicInteger threadNo = new AtomicInteger() ;
+        writers = Executors.newFixedThreadPool(writerCount, r -> {
+            Thread t = new Thread(r, "batch-writer-" + threadNo.incrementAndGet()) ;
+            t.setDaemon(true) ;
+            return t ;
+        });
+        for(int i = 0; i < writerCount; i++){
+            writers.submit(this::drainLoop) ;
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        writers.shutdownNow() ;
+        writers.awaitTermination(5, TimeUnit.SECONDS) ;
+        if( !queue.isEmpty() ) {
+            log.warn("{} queued batches were not written before shutdown", queue.size());
+        }
+    }
+
+    // returns the batch status (QUEUED, or COMPLETED when nothing was valid), or null when the queue is full
+    public BatchStatusResponse submit(EventService.Validated validated, LocalDateTime receivedTime) {
+
+        QueuedBatch batch = new QueuedBatch(UUID.randomUUID().toString(), validated.valid(), validated.rejections(), receivedTime) ;
+        if( batch.events().isEmpty() ) {
+            return record(batch.id(), COMPLETED, withRejections(new BatchResponse(0, 0, 0, 0, new ArrayList<>()), batch)) ;
+        }
+        record(batch.id(), QUEUED, null) ;
+        if( !queue.offer(batch) ) {
+            synchronized (statuses) {
+                statuses.remove(batch.id()) ;
+            }
+            return null ;
+        }
+        return new BatchStatusResponse(batch.id(), QUEUED, null, batch.rejections()) ;
+    }
+
+    public BatchStatusResponse status(String batchId) {
+        synchronized (statuses) {
+            return statuses.get(batchId) ;
+        }
+    }
+
+    private void drainLoop() {
+        while( !Thread.currentThread().isInterrupted() ){
+            try {
+                List<QueuedBatch> group = new ArrayList<>() ;
+                group.add(queue.take()) ;
+                queue.drainTo(group, maxCoalesce - 1) ;
+                write(group) ;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt() ;
+            } catch (Exception e) {
+                log.error("batch writer failed", e);
+            }
+        }
+    }
+
+    private void write(List<QueuedBatch> group) {
+        try {
+            // new machine keys and day partitions are written before the group's transaction holds a connection
+            group.forEach(batch -> eventService.prepareWrite(batch.events(), batch.receivedTime())) ;
+            List<BatchResponse> responses = transactionTemplate.execute(status -> {
+                List<BatchResponse> result = new ArrayList<>(group.size()) ;
+                for(QueuedBatch batch : group){
+                    result.add(eventService.processBatch(batch.events(), batch.receivedTime())) ;
+                }
+                return result ;
+            });
+            for(int i = 0; i < group.size(); i++){
+                record(group.get(i).id(), COMPLETED, withRejections(responses.get(i), group.get(i))) ;
+            }
+        } catch (RuntimeException e) {
+            if( group.size() > 1 ) {
+                group.forEach(batch -> write(List.of(batch))) ;
+                return ;
+            }
+            log.error("error in writing queued batch {}", group.get(0).id(), e);
+            record(group.get(0).id(), FAILED, null) ;
+        }
+    }
+
+    private BatchStatusResponse record(String batchId, String status, BatchResponse result) {
+        BatchStatusResponse response = new BatchStatusResponse(batchId, status, result, null) ;
+        synchronized (statuses) {
+            statuses.put(batchId, response) ;
+        }
+        return response ;
+    }
+
+    // the rejections of the validation before queueing come first, as in the synchronous response
+    private static BatchResponse withRejections(BatchResponse written, QueuedBatch batch) {
+        List<Rejection> rejections = new ArrayList<>(batch.rejections()) ;
+        rejections.addAll(written.getRejections()) ;
+        return new BatchResponse(written.getAccepted(), written.getDeduped(), written.getUpdated(), rejections.size(), rejections) ;
+    }
+
+    private record QueuedBatch(String id, List<EventRequestDTO> events, List<Rejection> rejections, LocalDateTime receivedTime) {
+    }
+}
@@ -0,0 +1,157 @@
+package com.factory.buyogobackend.service;
+
+import com.factory.buyogobackend.dto.BatchResponse;
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.metrics.IngestMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Bounded, expiring cache of the BatchResponses of recently completed batches, so a gateway that
+    retries a whole batch after a timeout gets the original response back without the batch being
+    validated, looked up or written again.
+
+    A batch is identified by its `Idempotency-Key` header, or, with `events.ingest.replay.digest` on,
+    by a SHA-256 digest of its events (JSON array bodies only, streamed bodies are never buffered).
+    The digest mode also answers a batch that is legitimately sent again later with the old response,
+    even if other batches changed the same events since, hence off by default.
+
+    A key sent again with different events (JSON array body) is refused instead of replayed.
+    Only completed batches are stored: two copies in flight at the same time are both processed,
+    which the eventId dedup already makes harmless.
+*/
+@Component
+public class BatchReplayCache {
+
+    public static final String HEADER = "Idempotency-Key" ;
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed" ;
+
+    private final int maxEntries ;
+    private final long ttlNanos ;
+    private final boolean digestMode ;
+
+    // insertion order is expiry order, every put re-inserts
+    private final LinkedHashMap<String, Entry> entries ;
+
+    @Autowired
+    private IngestMetrics metrics ;
+
+    public BatchReplayCache(@Value("${events.ingest.replay.max-entries:10000}") int maxEntries,
+                            @Value("${events.ingest.replay.ttl-seconds:600}") long ttlSeconds,
+                            @Value("${events.ingest.replay.digest:false}") boolean digestMode) {
+        this.maxEntries = maxEntries ;
+        this.ttlNanos = ttlSeconds * 1_000_000_000L ;
+        this.digestMode = digestMode ;
+        this.entries = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > BatchReplayCache.this.maxEntries ;
+            }
+        };
+    }
+
+    // null when the batch is not tracked: cache disabled, or no key and no digest mode (or a streamed body)
+    public Ticket ticket(String idempotencyKey, List<EventRequestDTO> events) {
+
+        if( maxEntries <= 0 ) return null ;
+        boolean keyed = idempotencyKey != null && !idempotencyKey.isBlank() ;
+        if( !keyed && (!digestMode || events == null) ) return null ;
+
+        String digest = events == null ? null : digest(events) ;
+        return keyed ? new Ticket("key:" + idempotencyKey, digest) : new Ticket("digest:" + digest, digest) ;
+    }
+
+    // the stored response, or null; throws KeyReusedException when the key was used for other events
+    public synchronized BatchResponse find(Ticket ticket) {
+
+        Entry entry = entries.get(ticket.key()) ;
+        if( entry == null ) return null ;
+        if( System.nanoTime() - entry.storedAt() > ttlNanos ) {
+            entries.remove(ticket.key()) ;
+            return null ;
+        }
+        if( entry.digest() != null && ticket.digest() != null && !entry.digest().equals(ticket.digest()) ) {
+            throw new KeyReusedException(ticket.key()) ;
+        }
+        metrics.replayed() ;
+        return entry.response() ;
+    }
+
+    public synchronized void put(Ticket ticket, BatchResponse response) {
+        long now = System.nanoTime() ;
+        expire(now) ;
+        entries.remove(ticket.key()) ;
+        entries.put(ticket.key(), new Entry(ticket.digest(), response, now)) ;
+    }
+
+    public synchronized int size() {
+        return entries.size() ;
+    }
+
+    private void expire(long now) {
+        Iterator<Entry> it = entries.values().iterator() ;
+        while( it.hasNext() && now - it.next().storedAt() > ttlNanos ){
+            it.remove() ;
+        }
+    }
+
+    // order sensitive: the same events in another order are another batch, their BatchResponse can differ
+    static String digest(List<EventRequestDTO> events) {
+        MessageDigest sha ;
+        try {
+            sha = MessageDigest.getInstance("SHA-256") ;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e) ;
+        }
+        ByteBuffer fixed = ByteBuffer.allocate(24) ;
+        for(EventRequestDTO dto : events){
+            update(sha, dto.getEventId()) ;
+            update(sha, dto.getMachineId()) ;
+            LocalDateTime time = dto.getEventTime() ;
+            fixed.clear() ;
+            fixed.putLong(time == null ? Long.MIN_VALUE : time.toEpochSecond(ZoneOffset.UTC)) ;
+            fixed.putInt(time == null ? -1 : time.getNano()) ;
+            fixed.putInt(dto.getDurationMs()) ;
+            fixed.putInt(dto.getDefectCount()) ;
+            sha.update(fixed.array(), 0, fixed.position()) ;
+        }
+        return HexFormat.of().formatHex(sha.digest()) ;
+    }
+
+    // length prefixed, so field boundaries and null are part of the digest
+    private static void update(MessageDigest sha, String value) {
+        if( value == null ) {
+            sha.update(ByteBuffer.allocate(4).putInt(-1).array()) ;
+            return ;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8) ;
+        sha.update(ByteBuffer.allocate(4).putInt(bytes.length).array()) ;
+        sha.update(bytes) ;
+    }
+
+    // digest is null for streamed bodies, which are then matched on the key alone
+    public record Ticket(String key, String digest) {
+    }
+
+    private record Entry(String digest, BatchResponse response, long storedAt) {
+    }
+
+    public static class KeyReusedException extends RuntimeException {
+        public KeyReusedException(String key) {
+            super("idempotency key reused for a different batch: " + key) ;
+        }
+    }
+}
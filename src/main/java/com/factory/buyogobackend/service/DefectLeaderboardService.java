@@ -0,0 +1,183 @@
+package com.factory.buyogobackend.service;
+
+import com.factory.buyogobackend.model.Event;
+import com.factory.buyogobackend.model.LineStatsBucket;
+import com.factory.buyogobackend.model.Machine;
+import com.factory.buyogobackend.model.MachinesChangedEvent;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.factory.buyogobackend.repository.LineStatsBucketRepository;
+import com.factory.buyogobackend.repository.hot.HotEventTier;
+import com.factory.buyogobackend.repository.jdbc.UpsertResult;
+import com.factory.buyogobackend.repository.keys.KeyDictionary;
+import com.factory.buyogobackend.repository.keys.KeyKind;
+import com.factory.buyogobackend.repository.projection.LineTotals;
+import com.factory.buyogobackend.repository.projection.MachineStatsProjection;
+import com.factory.buyogobackend.repository.projection.TopDefectLineProjection;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/*
+    Maintains the hourly line_stats_buckets rollup and serves the top-defect-lines leaderboard from it.
+
+    Like StatsRollupService, a window is answered from full buckets plus the raw events of the partial
+    hours at both edges, then the top `limit` lines are picked with a bounded heap.
+
+    Machines are resolved through MachineDirectory instead of a SQL join: the raw edges are read per
+    machine for the factory's machineId IN-list and summed per line in memory. Events of machines that
+    are not in the directory do not count towards any line. Windows inside the hot tier's range are
+    summed per machine from memory and grouped per line the same way. When machines change, refreshMachines()
+    reloads the directory and recomputes the line buckets from machine_stats_buckets.
+*/
+@Slf4j
+@Service
+public class DefectLeaderboardService {
+
+    private static final Comparator<TopDefectLineProjection> BY_DEFECTS =
+            Comparator.comparingLong(TopDefectLineProjection::getTotalDefects) ;
+
+    @Autowired
+    private LineStatsBucketRepository lineBucketRepository ;
+
+    @Autowired
+    private MachineDirectory machineDirectory ;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager ;
+
+    @Autowired
+    private EventRepository eventRepository ;
+
+    @Autowired
+    private HotEventTier hotEventTier ;
+
+    @Autowired
+    private KeyDictionary keyDictionary ;
+
+    // must run in the transaction that wrote the events
+    public void apply(UpsertResult result) {
+
+        Map<LineStatsBucket.Key, LineStatsBucket> deltas = new HashMap<>() ;
+        result.getInserted().forEach(e -> addDelta(deltas, e, 1)) ;
+        result.getUpdated().forEach(e -> addDelta(deltas, e, 1)) ;
+        result.getSuperseded().forEach(e -> addDelta(deltas, e, -1)) ;
+
+        lineBucketRepository.applyDeltas(deltas.values()) ;
+    }
+
+    // void: Spring publishes a listener's return value as a new event
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        refreshMachines() ;
+    }
+
+    // published by MachineChangeListener after the commit of a machine change
+    @EventListener(MachinesChangedEvent.class)
+    public void onMachinesChanged() {
+        refreshMachines() ;
+    }
+
+    // runs in its own transaction, also when called from an afterCommit callback; returns the machine count
+    public int refreshMachines() {
+
+        machineDirectory.reload() ;
+
+        TransactionTemplate tx = new TransactionTemplate(transactionManager) ;
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW) ;
+        tx.executeWithoutResult(status -> lineBucketRepository.rebuild()) ;
+
+        log.info("line stats buckets rebuilt, {} buckets", lineBucketRepository.count());
+        return machineDirectory.size() ;
+    }
+
+    public List<TopDefectLineProjection> topDefectLines(String factoryId, LocalDateTime from, LocalDateTime to, int limit) {
+
+        if( limit <= 0 ) return List.of() ;
+
+        Map<String, LineTotals> totals = new HashMap<>() ;
+        LocalDateTime firstFull = StatsRollupService.ceilBucket(from) ;
+        LocalDateTime lastFull = StatsRollupService.floorBucket(to) ;
+
+        if( hotEventTier.covers(from) ) {
+            merge(totals, byLine(hotEventTier.statsByMachine(machineDirectory.machinesOfFactory(factoryId), from, to))) ;
+        } else if( !firstFull.isBefore(lastFull) ) {
+            merge(totals, rawByLine(factoryId, from, to)) ;
+        } else {
+            merge(totals, lineBucketRepository.sumBucketsByLine(factoryId, firstFull, lastFull)) ;
+            if( from.isBefore(firstFull) ) merge(totals, rawByLine(factoryId, from, firstFull)) ;
+            if( lastFull.isBefore(to) ) merge(totals, rawByLine(factoryId, lastFull, to)) ;
+        }
+
+        PriorityQueue<TopDefectLineProjection> top = new PriorityQueue<>(limit + 1, BY_DEFECTS) ;
+        for(LineTotals line : totals.values()){
+            top.offer(line) ;
+            if( top.size() > limit ) top.poll() ;
+        }
+
+        List<TopDefectLineProjection> result = new ArrayList<>(top) ;
+        result.sort(BY_DEFECTS.reversed()) ;
+        return result ;
+    }
+
+    private List<TopDefectLineProjection> rawByLine(String factoryId, LocalDateTime from, LocalDateTime to) {
+
+        Set<String> machineIds = machineDirectory.machinesOfFactory(factoryId) ;
+        if( machineIds.isEmpty() ) return List.of() ;
+
+        return byLine(eventRepository.fetchStatsByMachine(machineIds, from, to)) ;
+    }
+
+    private List<TopDefectLineProjection> byLine(List<MachineStatsProjection> rows) {
+
+        Map<String, LineTotals> byLine = new HashMap<>() ;
+        for(MachineStatsProjection row : rows){
+            Machine machine = machineDirectory.find(row.getMachineId()) ;
+            if( machine == null || machine.getLineId() == null ) continue ;
+            byLine.merge(machine.getLineId(),
+                    new LineTotals(machine.getLineId(), row.getDefectsCount(), row.getEventsCount()),
+                    LineTotals::plus) ;
+        }
+        return new ArrayList<>(byLine.values()) ;
+    }
+
+    private void merge(Map<String, LineTotals> totals, List<TopDefectLineProjection> rows) {
+        for(TopDefectLineProjection row : rows){
+            if( row.getLineId() == null ) continue ;
+            totals.merge(row.getLineId(),
+                    new LineTotals(row.getLineId(), row.getTotalDefects(), row.getEventCount()),
+                    LineTotals::plus) ;
+        }
+    }
+
+    private void addDelta(Map<LineStatsBucket.Key, LineStatsBucket> deltas, Event event, int sign) {
+
+        Machine machine = machineDirectory.find(event.getMachineId()) ;
+        if( machine == null || machine.getFactoryId() == null || machine.getLineId() == null ) return ;
+
+        // interned by MachineDirectory.reload before the machine became visible
+        LineStatsBucket.Key key = new LineStatsBucket.Key(
+                keyDictionary.requireKey(KeyKind.FACTORY, machine.getFactoryId()),
+                keyDictionary.requireKey(KeyKind.LINE, machine.getLineId()),
+                StatsRollupService.floorBucket(event.getEventTime())) ;
+        LineStatsBucket delta = deltas.computeIfAbsent(key,
+                k -> new LineStatsBucket(k.getFactoryKey(), k.getLineKey(), k.getBucketStart(), 0, 0)) ;
+
+        int defects = event.getDefectCount() == -1 ? 0 : event.getDefectCount() ;
+        delta.setEventCount(delta.getEventCount() + sign);
+        delta.setDefectSum(delta.getDefectSum() + (long) sign * defects);
+    }
+}
@@ -1,23 +1,42 @@
 package com.factory.buyogobackend.service;
 
 import com.factory.buyogobackend.dto.*;
+import com.factory.buyogobackend.metrics.IngestMetrics;
 import com.factory.buyogobackend.model.Event;
 import com.factory.buyogobackend.repository.EventRepository;
+import com.factory.buyogobackend.repository.hot.HotEventTier;
+import com.factory.buyogobackend.repository.jdbc.EventPartitions;
+import com.factory.buyogobackend.repository.jdbc.UpsertResult;
+import com.factory.buyogobackend.repository.keys.KeyDictionary;
+import com.factory.buyogobackend.repository.keys.KeyKind;
 import com.factory.buyogobackend.repository.projection.StatsProjection;
+import com.factory.buyogobackend.repository.projection.StatsTotals;
 import com.factory.buyogobackend.repository.projection.TopDefectLineProjection;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @Service
@@ -26,86 +45,287 @@ public class EventService {
     @Autowired
     private EventRepository eventRepository ;
 
-    @Transactional
+    @Autowired
+    private StatsRollupService statsRollupService ;
+
+    @Autowired
+    private DefectLeaderboardService defectLeaderboardService ;
+
+    @Autowired
+    private StatsCache statsCache ;
+
+    @Autowired
+    private LiveStatsHub liveStatsHub ;
+
+    @Autowired
+    private HotEventTier hotEventTier ;
+
+    @Autowired
+    private EventWatermarks eventWatermarks ;
+
+    @Autowired
+    private IngestMetrics metrics ;
+
+    @Autowired
+    private KeyDictionary keyDictionary ;
+
+    @Autowired
+    private EventPartitions eventPartitions ;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager ;
+
+    @Value("${events.ingest.parallel.threshold:10000}")
+    private int parallelThreshold ;
+
+    // 0 = one per available processor, 1 = always single threaded
+    @Value("${events.ingest.parallel.threads:0}")
+    private int parallelThreads ;
+
+    private ExecutorService preprocessPool ;
+    private TransactionTemplate transactionTemplate ;
+
+    @PostConstruct
+    void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager) ;
+        if( parallelThreads <= 0 ) parallelThreads = Runtime.getRuntime().availableProcessors() ;
+        if( parallelThreads < 2 ) return ;
+
+        AtomicInteger threadNo = new AtomicInteger() ;
+        preprocessPool = Executors.newFixedThreadPool(parallelThreads, r -> {
+            Thread t = new Thread(r, "batch-preprocess-" + threadNo.incrementAndGet()) ;
+            t.setDaemon(true) ;
+            return t ;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        if( preprocessPool != null ) preprocessPool.shutdownNow() ;
+    }
+
     public BatchResponse processBatch(List<EventRequestDTO> events){
+        return processBatch(events, LocalDateTime.now()) ;
+    }
 
-        Map<String, Event> validEventsMap = new HashMap<>() ;
-        List<Rejection> rejections = new ArrayList<>() ;
+    // receivedTime is passed in so that every chunk of a streamed batch shares the same ingestion time.
+    // Validation, dedup, key interning and day partition creation run before the write transaction opens
+    // (or joins the caller's)
+    public BatchResponse processBatch(List<EventRequestDTO> events, LocalDateTime now){
+        return processChunk(events, now, Map.of()).response() ;
+    }
 
-        LocalDateTime now = LocalDateTime.now();
-        int deduped = 0 ;
-        int updated = 0 ;
+    // processBatch for one chunk of a streamed batch; `streamed` is the payload hash the earlier chunks
+    // last wrote per eventId, an occurrence repeating it counts as deduped as it would inside one array
+    Chunk processChunk(List<EventRequestDTO> events, LocalDateTime now, Map<String, Long> streamed){
+
+        long batchStarted = IngestMetrics.start() ;
+        Preprocessed batch = preprocessPool != null && events.size() >= parallelThreshold
+                ? preprocessParallel(events, now, streamed)
+                : preprocess(events, now, streamed) ;
+        List<Rejection> rejections = batch.rejections() ;
+        int deduped = batch.deduped() ;
+        prepareWrite(batch.events()) ;
+
+        UpsertResult result = transactionTemplate.execute(status -> {
+            // lookup / decide / persist are recorded inside upsertBatch
+            UpsertResult written = eventRepository.upsertBatch(batch.events()) ;
+            long started = IngestMetrics.start() ;
+            statsRollupService.apply(written) ;
+            defectLeaderboardService.apply(written) ;
+            // the hot tier is updated before the cache is invalidated, so a stats miss after that sees the batch
+            hotEventTier.apply(written) ;
+            statsCache.invalidate(written) ;
+            liveStatsHub.publish(written) ;
+            eventWatermarks.apply(written) ;
+            metrics.rolledUp(started) ;
+            return written ;
+        });
+        metrics.batch(events.size(), batchStarted) ;
+
+        deduped += result.getDeduped() ;
+        int updated = result.getUpdated().size() ;
+
+        BatchResponse response = new BatchResponse(
+                result.getInserted().size() + updated, deduped, updated, rejections.size(), rejections
+        );
+        return new Chunk(response, batch.events(), result) ;
+    }
 
+    // validation of the async path, on the request thread: the rejections are answered at once and only
+    // the valid events are queued, so processBatch finds nothing left to reject in them
+    public Validated validate(List<EventRequestDTO> events, LocalDateTime now) {
+        List<EventRequestDTO> valid = new ArrayList<>(events.size()) ;
+        List<Rejection> rejections = new ArrayList<>() ;
         for(EventRequestDTO dto : events){
+            if( isValid(dto, rejections, now) ) valid.add(dto) ;
+        }
+        countRejections(rejections) ;
+        return new Validated(valid, rejections) ;
+    }
 
-            if( isValid(dto, rejections , now) ){
+    // machine keys and day partitions of a batch, for callers that open their own transaction around
+    // processBatch; an id of an event that validation later rejects gets a key too, which is harmless
+    public void prepareWrite(List<EventRequestDTO> events, LocalDateTime now) {
+        List<String> machineIds = new ArrayList<>(events.size()) ;
+        Set<LocalDate> days = new HashSet<>() ;
+        List<Rejection> unused = new ArrayList<>() ;
+        for(EventRequestDTO dto : events){
+            machineIds.add(dto.getMachineId()) ;
+            if( isValid(dto, unused, now) ) days.add(EventPartitions.dayOf(dto.getEventTime())) ;
+        }
+        keyDictionary.internAll(KeyKind.MACHINE, machineIds) ;
+        eventPartitions.create(days) ;
+    }
 
-                Event event = maptoEvent(dto, now) ;
-                String id = dto.getEventId();
-                if( validEventsMap.containsKey(id) && samePayLoad( event, validEventsMap.get( dto.getEventId())) ){
-                        deduped++ ;
-                }
+    private void prepareWrite(Collection<Event> events) {
+        List<String> machineIds = new ArrayList<>(events.size()) ;
+        Set<LocalDate> days = new HashSet<>() ;
+        for(Event e : events){
+            machineIds.add(e.getMachineId()) ;
+            days.add(EventPartitions.dayOf(e.getEventTime())) ;
+        }
+        keyDictionary.internAll(KeyKind.MACHINE, machineIds) ;
+        eventPartitions.create(days) ;
+    }
+
+    // validates / maps in input order, then dedups keeping the last occurrence of every eventId
+    private Preprocessed preprocess(List<EventRequestDTO> events, LocalDateTime now, Map<String, Long> streamed) {
+
+        long started = IngestMetrics.start() ;
+        List<Event> validEvents = new ArrayList<>(events.size()) ;
+        List<Rejection> rejections = new ArrayList<>() ;
 
-                validEventsMap.put(id, event) ;
+        for(EventRequestDTO dto : events){
+            if( isValid(dto, rejections , now) ){
+                validEvents.add(maptoEvent(dto, now)) ;
             }
         }
+        countRejections(rejections) ;
+        started = metrics.validated(started) ;
+
+        Map<String, Event> validEventsMap = new HashMap<>() ;
+        int deduped = dedup(List.of(validEvents), validEventsMap, streamed) ;
+        metrics.deduped(started) ;
+
+        return new Preprocessed(validEventsMap.values(), deduped, rejections) ;
+    }
 
-        List<Event> eventsInDB = eventRepository.findAllById(validEventsMap.keySet());
-        Map<String, Event> dbEventMap = eventsInDB.stream().collect(Collectors.toMap(Event::getEventId, e -> e));
+    /*
+        Same result as preprocess() for large batches, on preprocessPool:
+          1. contiguous ranges are validated / mapped in parallel; rejections are concatenated in range
+             order, so they are reported in input order
+          2. valid events are split by eventId hash, each range keeping input order inside a partition,
+             and every partition is deduped on its own; all occurrences of an id are in one partition
+             and in input order, so the last one still wins and the deduped count is unchanged
+    */
+    private Preprocessed preprocessParallel(List<EventRequestDTO> events, LocalDateTime now, Map<String, Long> streamed) {
+
+        long started = IngestMetrics.start() ;
+        int parts = parallelThreads ;
+        int rangeSize = (events.size() + parts - 1) / parts ;
+
+        List<Future<ValidatedRange>> ranges = new ArrayList<>(parts) ;
+        for(int from = 0; from < events.size(); from += rangeSize){
+            List<EventRequestDTO> range = events.subList(from, Math.min(from + rangeSize, events.size())) ;
+            ranges.add(preprocessPool.submit(() -> validateRange(range, now, parts))) ;
+        }
+        List<ValidatedRange> validated = new ArrayList<>(ranges.size()) ;
+        List<Rejection> rejections = new ArrayList<>() ;
+        for(Future<ValidatedRange> range : ranges){
+            ValidatedRange r = await(range) ;
+            validated.add(r) ;
+            rejections.addAll(r.rejections()) ;
+        }
+        countRejections(rejections) ;
+        started = metrics.validated(started) ;
+
+        List<Future<Map<String, Event>>> partitions = new ArrayList<>(parts) ;
+        int[] deduped = new int[parts] ;
+        for(int p = 0; p < parts; p++){
+            int partition = p ;
+            partitions.add(preprocessPool.submit(() -> {
+                List<List<Event>> inOrder = validated.stream().map(r -> r.byPartition().get(partition)).toList() ;
+                Map<String, Event> unique = new HashMap<>() ;
+                deduped[partition] = dedup(inOrder, unique, streamed) ;
+                return unique ;
+            })) ;
+        }
+        List<Event> unique = new ArrayList<>() ;
+        for(Future<Map<String, Event>> partition : partitions){
+            unique.addAll(await(partition).values()) ;
+        }
+        metrics.deduped(started) ;
 
-        List<Event> toSave = new ArrayList<>() ;
-        for( Event event : validEventsMap.values() ) {
+        return new Preprocessed(unique, Arrays.stream(deduped).sum(), rejections) ;
+    }
 
-            String id = event.getEventId();
-            if( dbEventMap.containsKey(id) ) {
+    private ValidatedRange validateRange(List<EventRequestDTO> range, LocalDateTime now, int parts) {
 
-                Event dbEvent = dbEventMap.get(id);
-                if( samePayLoad(event, dbEvent) ) {
-                    deduped++ ;
-                    continue;
-                }else if(event.getReceivedTime().isBefore( dbEventMap.get(id).getReceivedTime() ) )
-                    continue;
+        List<Rejection> rejections = new ArrayList<>() ;
+        List<List<Event>> byPartition = new ArrayList<>(parts) ;
+        for(int p = 0; p < parts; p++) byPartition.add(new ArrayList<>()) ;
 
-                updated++ ;
+        for(EventRequestDTO dto : range){
+            if( isValid(dto, rejections, now) ){
+                byPartition.get(Math.floorMod(dto.getEventId().hashCode(), parts)).add(maptoEvent(dto, now)) ;
             }
-
-            toSave.add(event) ;
         }
+        return new ValidatedRange(rejections, byPartition) ;
+    }
 
-        eventRepository.saveAll(toSave) ;
+    // the first occurrence of an id is compared with what an earlier chunk of the same stream wrote
+    private int dedup(List<List<Event>> validEvents, Map<String, Event> validEventsMap, Map<String, Long> streamed) {
+        int deduped = 0 ;
+        for(List<Event> events : validEvents){
+            for(Event event : events){
+                Event previous = validEventsMap.put(event.getEventId(), event) ;
+                Long streamedHash = previous == null ? streamed.get(event.getEventId()) : null ;
+                if( previous != null ? samePayLoad(event, previous)
+                        : streamedHash != null && streamedHash == event.getPayloadHash() ){
+                    deduped++ ;
+                }
+            }
+        }
+        return deduped ;
+    }
 
-        return new BatchResponse(
-                toSave.size(), deduped, updated, rejections.size(), rejections
-        );
+    private void countRejections(List<Rejection> rejections) {
+        for(Rejection rejection : rejections){
+            metrics.rejected(rejection.getReason()) ;
+        }
     }
 
-    private boolean samePayLoad(Event event1, Event event2) {
+    private static <T> T await(Future<T> future) {
         try {
-            return (
-                    event1.getMachineId().equals(event2.getMachineId() )&&
-                            event1.getEventTime().equals(event2.getEventTime() ) &&
-                            event1.getDurationMs() == event2.getDurationMs() &&
-                            event1.getDefectCount() == event2.getDefectCount()
-            ) ;
-        } catch (Exception e) {
-            log.error("error in calculating payload matching", e);
-            return false;
+            return future.get() ;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt() ;
+            throw new IllegalStateException("interrupted while preprocessing a batch", e) ;
+        } catch (ExecutionException e) {
+            if( e.getCause() instanceof RuntimeException cause ) throw cause ;
+            throw new IllegalStateException(e.getCause()) ;
         }
+    }
 
+    // machineId, eventTime, durationMs and defectCount, through the hash computed in maptoEvent
+    boolean samePayLoad(Event event1, Event event2) {
+        return event1.getPayloadHash() == event2.getPayloadHash() ;
     }
 
-    private Event maptoEvent(EventRequestDTO dto, LocalDateTime now) {
+    Event maptoEvent(EventRequestDTO dto, LocalDateTime now) {
         return new Event(
                 dto.getEventId(),
                 dto.getMachineId(),
                 dto.getEventTime(),
                 now,
                 dto.getDurationMs(),
-                dto.getDefectCount()
+                dto.getDefectCount(),
+                Event.hashPayload(dto.getMachineId(), dto.getEventTime(), dto.getDurationMs(), dto.getDefectCount())
         );
     }
 
-    private boolean isValid(EventRequestDTO dto, List<Rejection> rejections, LocalDateTime now) {
+    boolean isValid(EventRequestDTO dto, List<Rejection> rejections, LocalDateTime now) {
 
 
         if( dto.getEventTime() == null ) {
@@ -113,6 +333,12 @@ public class EventService {
             return false ;
         }
 
+        // day partitions are named by a four digit year
+        if( dto.getEventTime().getYear() < 1 ) {
+            rejections.add(new Rejection(dto.getEventId(), "EVENT_TIME_OUT_OF_RANGE")) ;
+            return false ;
+        }
+
         if( dto.getEventTime().isAfter(now.plusMinutes(15) ) ){
             rejections.add(new Rejection(dto.getEventId(), "EVENT_TIME_TOO_FAR_IN_FUTURE")) ;
             return false ;
@@ -137,21 +363,19 @@ public class EventService {
     }
 
     public QueryStatsResponse getStats(String machineId, LocalDateTime start, LocalDateTime end) {
-        try {
-            StatsProjection stats = eventRepository.fetchStats(machineId, start, end);
-            long eventsCount = stats.getEventsCount();
-            long defectsCount = stats.getDefectsCount();
-
-            double windowSeconds = Duration.between(start, end).getSeconds();
-            double windowHours = windowSeconds / 3600.0 ;
-
-            double avgDefectRate = (windowHours > 0) ? defectsCount / windowHours : 0.0 ;
-
-            String status = (avgDefectRate < 2.0 ) ? "Healthy" : "Warning" ;
+        QueryStatsResponse cached = statsCache.get(machineId, start, end) ;
+        if( cached != null ) {
+            return cached ;
+        }
 
-            return new QueryStatsResponse(
-                    machineId, start, end, eventsCount, defectsCount, avgDefectRate, status
-            ) ;
+        try {
+            long version = statsCache.version(machineId) ;
+            long started = IngestMetrics.start() ;
+            StatsProjection stats = statsRollupService.fetchStats(machineId, start, end);
+            metrics.statsQuery(started) ;
+            QueryStatsResponse response = toResponse(machineId, start, end, stats) ;
+            statsCache.put(response, version) ;
+            return response ;
 
         } catch (Exception e){
             log.error("error in querying stats", e);
@@ -159,9 +383,59 @@ public class EventService {
         }
     }
 
+    // stats of many machines over one window: cached rows are reused, the rest come from one grouped pass
+    public List<QueryStatsResponse> getStats(Collection<String> machineIds, LocalDateTime start, LocalDateTime end) {
+
+        Map<String, QueryStatsResponse> found = new HashMap<>() ;
+        Map<String, Long> versions = new HashMap<>() ;
+        for(String machineId : machineIds){
+            QueryStatsResponse cached = statsCache.get(machineId, start, end) ;
+            if( cached != null ) found.put(machineId, cached) ;
+            else versions.put(machineId, statsCache.version(machineId)) ;
+        }
+
+        if( !versions.isEmpty() ) {
+            long started = IngestMetrics.start() ;
+            Map<String, StatsTotals> totals = statsRollupService.fetchStatsByMachine(versions.keySet(), start, end) ;
+            metrics.bulkStatsQuery(started) ;
+
+            StatsTotals none = new StatsTotals(0, 0) ;
+            versions.forEach((machineId, version) -> {
+                QueryStatsResponse response = toResponse(machineId, start, end, totals.getOrDefault(machineId, none)) ;
+                statsCache.put(response, version) ;
+                found.put(machineId, response) ;
+            });
+        }
+
+        List<QueryStatsResponse> response = new ArrayList<>(machineIds.size()) ;
+        machineIds.forEach(machineId -> response.add(found.get(machineId))) ;
+        return response ;
+    }
+
+    static QueryStatsResponse toResponse(String machineId, LocalDateTime start, LocalDateTime end, StatsProjection stats) {
+
+        long eventsCount = stats.getEventsCount();
+        long defectsCount = stats.getDefectsCount();
+
+        double windowSeconds = Duration.between(start, end).getSeconds();
+        double windowHours = windowSeconds / 3600.0 ;
+
+        double avgDefectRate = (windowHours > 0) ? defectsCount / windowHours : 0.0 ;
+
+        String status = (avgDefectRate < 2.0 ) ? "Healthy" : "Warning" ;
+
+        return new QueryStatsResponse(machineId, start, end, eventsCount, defectsCount, avgDefectRate, status) ;
+    }
+
+    public CacheStatsResponse getStatsCacheMetrics() {
+        return statsCache.snapshot() ;
+    }
+
     public List<TopDefectLineResponse> getTopDefectLines(String factoryId,LocalDateTime from, LocalDateTime to, int limit){
 
-        List<TopDefectLineProjection> topDefectLines = eventRepository.findTopDefectLines(factoryId, from, to, PageRequest.of(0, limit));
+        long started = IngestMetrics.start() ;
+        List<TopDefectLineProjection> topDefectLines = defectLeaderboardService.topDefectLines(factoryId, from, to, limit);
+        metrics.topDefectLinesQuery(started) ;
         List<TopDefectLineResponse> response = new ArrayList<>() ;
 
         for(TopDefectLineProjection proj : topDefectLines){
@@ -179,4 +453,13 @@ public class EventService {
         return Math.round(v * 100.0) / 100.0;
     }
 
+    public record Validated(List<EventRequestDTO> valid, List<Rejection> rejections) {}
+
+    private record Preprocessed(Collection<Event> events, int deduped, List<Rejection> rejections) {}
+
+    // candidates holds the last occurrence of every valid eventId of the chunk
+    record Chunk(BatchResponse response, Collection<Event> candidates, UpsertResult result) {}
+
+    private record ValidatedRange(List<Rejection> rejections, List<List<Event>> byPartition) {}
+
 }
@@ -0,0 +1,186 @@
+package com.factory.buyogobackend.service;
+
+import com.factory.buyogobackend.codec.BinaryEventDecoder;
+import com.factory.buyogobackend.dto.BatchResponse;
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.dto.Rejection;
+import com.factory.buyogobackend.model.Event;
+import com.factory.buyogobackend.repository.jdbc.UpsertResult;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+    Streams a batch body (NDJSON, a plain JSON array or BinaryEventFormat) through EventService in
+    fixed size chunks, so only one chunk of DTOs / entities is on the heap at any time.
+
+    Every chunk is processed with the same receivedTime. An eventId repeated in a later chunk is
+    written over the row the earlier chunk stored (last wins, as in one array), and counted as in one
+    array: the stream keeps, per eventId written, the payload hash stored before the stream and the
+    one it last wrote, and the chunk's counts for a repeated id are replaced by the id's outcome
+    against the pre-stream row. These maps hold every distinct eventId of the stream, about 100 bytes
+    each: memory is O(distinct ids of the stream), not bounded by the chunk size (1M ids ~ 100 MB).
+    The counts assume no other writer changes the stream's ids while it runs.
+
+    Chunks commit one by one: when the body turns out malformed, or a chunk fails, the chunks before
+    it stay written and PartialIngestException carries their counts.
+*/
+@Slf4j
+@Service
+public class EventStreamIngestor {
+
+    @Autowired
+    private EventService eventService ;
+
+    @Value("${events.ingest.stream-chunk-size:1000}")
+    private int chunkSize ;
+
+    private final ObjectReader reader ;
+
+    public EventStreamIngestor(ObjectMapper objectMapper) {
+        this.reader = objectMapper.readerFor(EventRequestDTO.class);
+    }
+
+    // a malformed body throws PartialIngestException caused by a JsonProcessingException, also when
+    // the very first token is malformed (nothing committed then)
+    public BatchResponse ingest(InputStream body) throws IOException {
+        MappingIterator<EventRequestDTO> it ;
+        try {
+            it = reader.readValues(body) ;
+        } catch (JsonProcessingException e) {
+            throw new PartialIngestException(new BatchResponse(0, 0, 0, 0, new ArrayList<>()), new UncheckedIOException(e)) ;
+        }
+        try (it) {
+            return ingest(it) ;
+        }
+    }
+
+    // a malformed body throws PartialIngestException caused by BinaryEventFormat.FormatException
+    public BatchResponse ingestBinary(InputStream body) {
+        return ingest(new BinaryEventDecoder(body)) ;
+    }
+
+    private BatchResponse ingest(Iterator<EventRequestDTO> events) {
+
+        // at the stored precision, so a later chunk's receivedTime is not older than the row an earlier chunk wrote
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        BatchResponse total = new BatchResponse(0, 0, 0, 0, new ArrayList<>()) ;
+        // payload hash last written per eventId, and the stored one before the stream for ids that had a row
+        Map<String, Long> lastHashes = new HashMap<>() ;
+        Map<String, Long> originHashes = new HashMap<>() ;
+        List<EventRequestDTO> chunk = new ArrayList<>(chunkSize) ;
+        int seen = 0 ;
+
+        try {
+            while (events.hasNext()) {
+                chunk.add(events.next()) ;
+                seen++ ;
+                if (chunk.size() >= chunkSize) {
+                    apply(total, eventService.processChunk(chunk, now, lastHashes), lastHashes, originHashes) ;
+                    chunk = new ArrayList<>(chunkSize) ;
+                }
+            }
+
+            if (!chunk.isEmpty()) {
+                apply(total, eventService.processChunk(chunk, now, lastHashes), lastHashes, originHashes) ;
+            }
+        } catch (RuntimeException e) {
+            throw new PartialIngestException(total, e) ;
+        }
+
+        log.debug("streamed {} events in chunks of {}", seen, chunkSize);
+        return seen == 0 ? null : total ;
+    }
+
+    private void apply(BatchResponse total, EventService.Chunk chunk, Map<String, Long> lastHashes, Map<String, Long> originHashes) {
+
+        merge(total, chunk.response()) ;
+
+        UpsertResult result = chunk.result() ;
+        Map<String, Long> supersededHashes = new HashMap<>() ;
+        for(int i = 0; i < result.getUpdated().size(); i++){
+            supersededHashes.put(result.getUpdated().get(i).getEventId(), result.getSuperseded().get(i).getPayloadHash()) ;
+        }
+        Set<String> inserted = new HashSet<>() ;
+        result.getInserted().forEach(e -> inserted.add(e.getEventId())) ;
+
+        for(Event e : chunk.candidates()){
+            String eventId = e.getEventId() ;
+            long hash = e.getPayloadHash() ;
+            Long last = lastHashes.get(eventId) ;
+
+            if( last == null ) {
+                // first time in the stream: the chunk counted it against the pre-stream row, as one array would
+                if( supersededHashes.containsKey(eventId) ) originHashes.put(eventId, supersededHashes.get(eventId)) ;
+                else if( !inserted.contains(eventId) ) originHashes.put(eventId, hash) ;
+                lastHashes.put(eventId, hash) ;
+                continue ;
+            }
+
+            // the chunk compared this id with the row an earlier chunk wrote: take that back ...
+            if( supersededHashes.containsKey(eventId) ) add(total, -1, 0, -1) ;
+            else if( hash == last ) add(total, 0, -1, 0) ;
+            else continue ;  // not written (a newer receivedTime is stored), nothing was counted
+            // ... and move the id's outcome against the pre-stream row to its new payload
+            Long origin = originHashes.get(eventId) ;
+            outcome(total, origin, last, -1) ;
+            outcome(total, origin, hash, 1) ;
+            lastHashes.put(eventId, hash) ;
+        }
+    }
+
+    // origin null: the stream inserted the row
+    private static void outcome(BatchResponse total, Long origin, long hash, int sign) {
+        if( origin == null ) add(total, sign, 0, 0) ;
+        else if( origin == hash ) add(total, 0, sign, 0) ;
+        else add(total, sign, 0, sign) ;
+    }
+
+    private static void add(BatchResponse total, int accepted, int deduped, int updated) {
+        total.setAccepted(total.getAccepted() + accepted);
+        total.setDeduped(total.getDeduped() + deduped);
+        total.setUpdated(total.getUpdated() + updated);
+    }
+
+    private void merge(BatchResponse total, BatchResponse part) {
+        total.setAccepted(total.getAccepted() + part.getAccepted());
+        total.setDeduped(total.getDeduped() + part.getDeduped());
+        total.setUpdated(total.getUpdated() + part.getUpdated());
+        total.setRejected(total.getRejected() + part.getRejected());
+        List<Rejection> rejections = total.getRejections();
+        rejections.addAll(part.getRejections());
+    }
+
+    // counts of the chunks committed before the failure
+    public static class PartialIngestException extends RuntimeException {
+
+        private final BatchResponse committed ;
+
+        public PartialIngestException(BatchResponse committed, RuntimeException cause) {
+            super("streamed batch failed after " + committed.getAccepted() + " accepted events", cause) ;
+            this.committed = committed ;
+        }
+
+        public BatchResponse getCommitted() {
+            return committed ;
+        }
+    }
+}
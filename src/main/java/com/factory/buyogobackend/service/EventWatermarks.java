@@ -0,0 +1,199 @@
+package com.factory.buyogobackend.service;
+
+import com.factory.buyogobackend.dto.LatenessResponse;
+import com.factory.buyogobackend.dto.WatermarkResponse;
+import com.factory.buyogobackend.metrics.IngestMetrics;
+import com.factory.buyogobackend.model.Event;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.factory.buyogobackend.repository.MachineStatsBucketRepository;
+import com.factory.buyogobackend.repository.jdbc.UpsertResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+    Per-machine event time watermarks, and how far behind them events arrive.
+
+    A machine's watermark is the latest eventTime committed for it. An event's lateness is how far its
+    eventTime is behind the watermark its machine had before the batch (events of one batch are not
+    ordered against each other); it is late beyond `events.watermark.allowed-lateness-seconds`.
+
+    Nothing is recomputed for late events or receivedTime based updates: the rollups, line buckets,
+    hot tier and stats cache already take every batch as deltas (superseded versions subtracted, new
+    ones added) whatever the eventTime. This measures what those deltas touch: the lateness
+    distribution, and the hourly buckets changed after their hour was closed, i.e. behind the hour of
+    the watermark (superseded versions included, an update can empty a closed bucket).
+
+    Seeded at startup from each machine's latest rollup bucket plus an hour of idx_machine_time, then
+    fed the committed batches, so like the buckets it only sees rows written through processBatch.
+*/
+@Slf4j
+@Service
+public class EventWatermarks implements SmartInitializingSingleton {
+
+    // upper bounds in seconds of the lateness histogram, the last count is everything beyond
+    static final long[] LATENESS_BOUNDS = { 0, 60, 3_600, 86_400, 604_800 } ;
+    private static final String[] LATENESS_LABELS = { "0s", "1m", "1h", "1d", "7d", "older" } ;
+
+    @Value("${events.watermark.allowed-lateness-seconds:60}")
+    private long allowedLatenessSeconds ;
+
+    @Autowired
+    private EventRepository eventRepository ;
+
+    @Autowired
+    private MachineStatsBucketRepository bucketRepository ;
+
+    @Autowired
+    private IngestMetrics metrics ;
+
+    private final Map<String, Mark> marks = new ConcurrentHashMap<>() ;
+    private final AtomicLongArray histogram = new AtomicLongArray(LATENESS_BOUNDS.length + 1) ;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        Map<String, LocalDateTime> latestBuckets = bucketRepository.findLatestBuckets() ;
+        latestBuckets.forEach((machineId, bucketStart) -> {
+            LocalDateTime latest = eventRepository.findLatestEventTime(machineId, bucketStart) ;
+            if( latest != null ) marks.put(machineId, new Mark(latest)) ;
+        });
+        log.info("event watermarks seeded for {} machines", marks.size());
+    }
+
+    // applies the batch once the surrounding transaction commits
+    public void apply(UpsertResult result) {
+
+        if( result.getInserted().isEmpty() && result.getUpdated().isEmpty() ) return ;
+
+        if( TransactionSynchronizationManager.isSynchronizationActive() ) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyNow(result) ;
+                }
+            });
+        } else {
+            applyNow(result) ;
+        }
+    }
+
+    // machines never written are absent
+    public List<WatermarkResponse> watermarks(Collection<String> machineIds) {
+        List<WatermarkResponse> rows = new ArrayList<>() ;
+        for(String machineId : machineIds){
+            Mark mark = marks.get(machineId) ;
+            if( mark == null ) continue ;
+            synchronized (mark) {
+                rows.add(new WatermarkResponse(machineId, mark.watermark, mark.events, mark.lateEvents,
+                        mark.maxLatenessSeconds, mark.revisedBuckets)) ;
+            }
+        }
+        return rows ;
+    }
+
+    public LatenessResponse lateness() {
+        long events = 0 ;
+        long late = 0 ;
+        long revised = 0 ;
+        for(Mark mark : marks.values()){
+            synchronized (mark) {
+                events += mark.events ;
+                late += mark.lateEvents ;
+                revised += mark.revisedBuckets ;
+            }
+        }
+        Map<String, Long> distribution = new LinkedHashMap<>() ;
+        for(int i = 0; i < LATENESS_LABELS.length; i++){
+            distribution.put(LATENESS_LABELS[i], histogram.get(i)) ;
+        }
+        return new LatenessResponse(allowedLatenessSeconds, events, late, revised, distribution) ;
+    }
+
+    private void applyNow(UpsertResult result) {
+
+        Map<String, List<Event>> written = new HashMap<>() ;
+        Map<String, List<Event>> superseded = new HashMap<>() ;
+        result.getInserted().forEach(e -> written.computeIfAbsent(e.getMachineId(), m -> new ArrayList<>()).add(e)) ;
+        result.getUpdated().forEach(e -> written.computeIfAbsent(e.getMachineId(), m -> new ArrayList<>()).add(e)) ;
+        result.getSuperseded().forEach(e -> superseded.computeIfAbsent(e.getMachineId(), m -> new ArrayList<>()).add(e)) ;
+
+        Set<String> machines = new HashSet<>(written.keySet()) ;
+        machines.addAll(superseded.keySet()) ;
+        int revisedTotal = 0 ;
+        for(String machineId : machines){
+            List<Event> events = written.getOrDefault(machineId, List.of()) ;
+            Mark mark = marks.computeIfAbsent(machineId, m -> new Mark(null)) ;
+            synchronized (mark) {
+                LocalDateTime before = mark.watermark ;
+                LocalDateTime closedBefore = before == null ? null : StatsRollupService.floorBucket(before) ;
+                Set<LocalDateTime> revised = new HashSet<>() ;
+
+                LocalDateTime latest = before ;
+                for(Event e : events){
+                    long seconds = before == null || !e.getEventTime().isBefore(before)
+                            ? 0 : Duration.between(e.getEventTime(), before).toSeconds() ;
+                    boolean isLate = before != null && e.getEventTime().isBefore(before.minusSeconds(allowedLatenessSeconds)) ;
+                    histogram.incrementAndGet(histogramSlot(seconds)) ;
+                    metrics.lateness(seconds, isLate) ;
+
+                    mark.events++ ;
+                    if( isLate ) mark.lateEvents++ ;
+                    mark.maxLatenessSeconds = Math.max(mark.maxLatenessSeconds, seconds) ;
+                    addIfClosed(revised, closedBefore, e) ;
+                    if( latest == null || e.getEventTime().isAfter(latest) ) latest = e.getEventTime() ;
+                }
+                for(Event e : superseded.getOrDefault(machineId, List.of())){
+                    addIfClosed(revised, closedBefore, e) ;
+                }
+
+                mark.revisedBuckets += revised.size() ;
+                mark.watermark = latest ;
+                revisedTotal += revised.size() ;
+            }
+        }
+        metrics.revisedBuckets(revisedTotal) ;
+    }
+
+    private static void addIfClosed(Set<LocalDateTime> revised, LocalDateTime closedBefore, Event e) {
+        LocalDateTime bucket = StatsRollupService.floorBucket(e.getEventTime()) ;
+        if( closedBefore != null && bucket.isBefore(closedBefore) ) revised.add(bucket) ;
+    }
+
+    static int histogramSlot(long seconds) {
+        for(int i = 0; i < LATENESS_BOUNDS.length; i++){
+            if( seconds <= LATENESS_BOUNDS[i] ) return i ;
+        }
+        return LATENESS_BOUNDS.length ;
+    }
+
+    // guarded by itself
+    private static final class Mark {
+
+        LocalDateTime watermark ;
+        long events ;
+        long lateEvents ;
+        long maxLatenessSeconds ;
+        long revisedBuckets ;
+
+        Mark(LocalDateTime watermark) {
+            this.watermark = watermark ;
+        }
+    }
+}
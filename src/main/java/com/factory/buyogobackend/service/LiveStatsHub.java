@@ -0,0 +1,317 @@
+package com.factory.buyogobackend.service;
+
+import com.factory.buyogobackend.dto.QueryStatsResponse;
+import com.factory.buyogobackend.model.Event;
+import com.factory.buyogobackend.repository.jdbc.UpsertResult;
+import com.factory.buyogobackend.repository.projection.StatsTotals;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    Pushes rolling-window stats of subscribed machines over server-sent events.
+
+    Every committed batch marks its machines dirty. One dispatcher thread takes all dirty machines
+    at once (so a burst of batches costs one round), runs one grouped stats query per distinct
+    subscriber window and hands the rows to the subscribers of each machine.
+
+    A subscriber keeps only the latest row per machine until it is sent, so its backlog is bounded
+    by the machines it watches. Rows are written by a fixed sender pool with a bounded queue, never by
+    the dispatcher, and a subscriber has at most one write queued or running. A subscriber is dropped
+    (completed with an error, it has to reconnect) when its write cannot be queued, or when a new row
+    finds its current write started more than `max-lag-ms` ago. Lag is measured from the start of the
+    subscriber's own write, so waiting in the queue behind a slow client never counts against a
+    healthy one. A stuck write keeps its sender thread until the container's write timeout, so at
+    most `sender-threads` threads are ever held by slow clients.
+
+    Rows are sent as event `stats`, or `status` when the machine's status differs from the last row
+    this subscriber received.
+*/
+@Slf4j
+@Service
+public class LiveStatsHub {
+
+    @Autowired
+    private StatsRollupService statsRollupService ;
+
+    @Value("${events.live.sender-threads:2}")
+    private int senderThreads ;
+
+    @Value("${events.live.send-queue:1000}")
+    private int sendQueue ;
+
+    @Value("${events.live.max-lag-ms:5000}")
+    private long maxLagMs ;
+
+    @Value("${events.live.timeout-ms:1800000}")
+    private long timeoutMs ;
+
+    @Value("${events.live.max-subscribers:10000}")
+    private int maxSubscribers ;
+
+    private final Map<String, Set<Subscriber>> byMachine = new ConcurrentHashMap<>() ;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet() ;
+    private final AtomicLong dropped = new AtomicLong() ;
+
+    private final Object dirtyLock = new Object() ;
+    private Set<String> dirty = new HashSet<>() ;
+    private boolean dispatching ;
+
+    private ExecutorService dispatcher ;
+    private ExecutorService senders ;
+
+    @PostConstruct
+    void start() {
+        dispatcher = Executors.newSingleThreadExecutor(daemon("live-stats-dispatch")) ;
+        senders = new ThreadPoolExecutor(senderThreads, senderThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(sendQueue), daemon("live-stats-send")) ;
+    }
+
+    @PreDestroy
+    void stop() {
+        dispatcher.shutdownNow() ;
+        senders.shutdownNow() ;
+        subscribers.forEach(s -> s.emitter.complete()) ;
+    }
+
+    // null when max-subscribers is reached; the current stats of every machine are sent first
+    public SseEmitter subscribe(Collection<String> machineIds, Duration window) {
+
+        if( subscribers.size() >= maxSubscribers ) return null ;
+
+        Subscriber subscriber = new Subscriber(new SseEmitter(timeoutMs), Set.copyOf(machineIds), window) ;
+        subscriber.emitter.onCompletion(() -> unsubscribe(subscriber)) ;
+        subscriber.emitter.onTimeout(() -> unsubscribe(subscriber)) ;
+        subscriber.emitter.onError(e -> unsubscribe(subscriber)) ;
+
+        subscribers.add(subscriber) ;
+        for(String machineId : subscriber.machineIds){
+            byMachine.compute(machineId, (m, set) -> {
+                Set<Subscriber> updated = set == null ? ConcurrentHashMap.newKeySet() : set ;
+                updated.add(subscriber) ;
+                return updated ;
+            });
+        }
+        markDirty(subscriber.machineIds) ;
+        return subscriber.emitter ;
+    }
+
+    // marks the written machines dirty once the surrounding transaction commits
+    public void publish(UpsertResult result) {
+
+        Set<String> touched = new HashSet<>() ;
+        result.getInserted().forEach(e -> touched.add(e.getMachineId())) ;
+        result.getUpdated().forEach(e -> touched.add(e.getMachineId())) ;
+        result.getSuperseded().stream().map(Event::getMachineId).forEach(touched::add) ;
+        touched.retainAll(byMachine.keySet()) ;
+        if( touched.isEmpty() ) return ;
+
+        if( TransactionSynchronizationManager.isSynchronizationActive() ) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    markDirty(touched) ;
+                }
+            });
+        } else {
+            markDirty(touched) ;
+        }
+    }
+
+    public int subscriberCount() {
+        return subscribers.size() ;
+    }
+
+    public long droppedCount() {
+        return dropped.get() ;
+    }
+
+    private void markDirty(Collection<String> machineIds) {
+        synchronized (dirtyLock) {
+            dirty.addAll(machineIds) ;
+            if( dispatching ) return ;
+            dispatching = true ;
+        }
+        dispatcher.execute(this::dispatch) ;
+    }
+
+    private void dispatch() {
+        while( true ){
+            Set<String> machines ;
+            synchronized (dirtyLock) {
+                if( dirty.isEmpty() ) {
+                    dispatching = false ;
+                    return ;
+                }
+                machines = dirty ;
+                dirty = new HashSet<>() ;
+            }
+            try {
+                dispatch(machines) ;
+            } catch (Exception e) {
+                log.error("live stats dispatch failed for {} machines", machines.size(), e);
+            }
+        }
+    }
+
+    private void dispatch(Set<String> machines) {
+
+        // subscribers of these machines, grouped by window so each window is queried once
+        Map<Duration, Set<String>> machinesByWindow = new HashMap<>() ;
+        for(String machineId : machines){
+            for(Subscriber s : byMachine.getOrDefault(machineId, Set.of())){
+                machinesByWindow.computeIfAbsent(s.window, w -> new HashSet<>()).add(machineId) ;
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now() ;
+        StatsTotals none = new StatsTotals(0, 0) ;
+        for(Map.Entry<Duration, Set<String>> entry : machinesByWindow.entrySet()){
+            LocalDateTime start = now.minus(entry.getKey()) ;
+            Map<String, StatsTotals> totals = statsRollupService.fetchStatsByMachine(entry.getValue(), start, now) ;
+
+            for(String machineId : entry.getValue()){
+                QueryStatsResponse row = EventService.toResponse(machineId, start, now, totals.getOrDefault(machineId, none)) ;
+                for(Subscriber s : byMachine.getOrDefault(machineId, Set.of())){
+                    if( s.window.equals(entry.getKey()) ) offer(s, row) ;
+                }
+            }
+        }
+    }
+
+    private void offer(Subscriber s, QueryStatsResponse row) {
+        long now = System.currentTimeMillis() ;
+        synchronized (s) {
+            if( s.closed ) return ;
+            if( s.writeStartedAt != 0 && now - s.writeStartedAt > maxLagMs ) {
+                // the sender completes the emitter once the stuck write returns
+                close(s, "write blocked for more than " + maxLagMs + " ms") ;
+                return ;
+            }
+            s.pending.put(row.getMachineId(), row) ;
+            if( s.sending ) return ;
+            s.sending = true ;
+        }
+        try {
+            senders.execute(() -> drain(s)) ;
+        } catch (RejectedExecutionException e) {
+            // nothing is writing to this emitter, completing it does not block
+            close(s, "send queue full") ;
+            s.emitter.completeWithError(new IOException("live stats send queue full")) ;
+        }
+    }
+
+    private void drain(Subscriber s) {
+        Exception failure = null ;
+        while( true ){
+            List<QueryStatsResponse> rows ;
+            synchronized (s) {
+                if( s.closed || s.pending.isEmpty() ) {
+                    s.sending = false ;
+                    break ;
+                }
+                rows = new ArrayList<>(s.pending.values()) ;
+                s.pending.clear() ;
+                s.writeStartedAt = System.currentTimeMillis() ;
+            }
+            try {
+                for(QueryStatsResponse row : rows){
+                    String previous = s.lastStatus.put(row.getMachineId(), row.getStatus()) ;
+                    String name = previous == null || previous.equals(row.getStatus()) ? "stats" : "status" ;
+                    s.emitter.send(SseEmitter.event().name(name).data(row, MediaType.APPLICATION_JSON)) ;
+                }
+            } catch (IOException | IllegalStateException e) {
+                close(s, "write failed") ;
+                failure = e ;
+            } finally {
+                synchronized (s) {
+                    s.writeStartedAt = 0 ;
+                }
+            }
+        }
+        if( s.closed ) s.emitter.completeWithError(failure != null ? failure : new IOException("live stats subscriber too slow")) ;
+    }
+
+    // later offers see closed and keep nothing
+    private void close(Subscriber s, String reason) {
+        synchronized (s) {
+            if( s.closed ) return ;
+            s.closed = true ;
+            s.pending.clear() ;
+        }
+        unsubscribe(s) ;
+        dropped.incrementAndGet() ;
+        log.warn("live stats subscriber dropped, {}, {} machines", reason, s.machineIds.size());
+    }
+
+    private void unsubscribe(Subscriber s) {
+        if( !subscribers.remove(s) ) return ;
+        for(String machineId : s.machineIds){
+            byMachine.computeIfPresent(machineId, (m, set) -> {
+                set.remove(s) ;
+                return set.isEmpty() ? null : set ;
+            });
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger threadNo = new AtomicInteger() ;
+        return r -> {
+            Thread t = new Thread(r, name + "-" + threadNo.incrementAndGet()) ;
+            t.setDaemon(true) ;
+            return t ;
+        };
+    }
+
+    private static final class Subscriber {
+
+        final SseEmitter emitter ;
+        final Set<String> machineIds ;
+        final Duration window ;
+
+        // guarded by this
+        final LinkedHashMap<String, QueryStatsResponse> pending = new LinkedHashMap<>() ;
+        boolean sending ;
+        // start of the write in progress, 0 when none
+        long writeStartedAt ;
+        boolean closed ;
+
+        // only touched by the sender currently draining this subscriber
+        final Map<String, String> lastStatus = new HashMap<>() ;
+
+        Subscriber(SseEmitter emitter, Set<String> machineIds, Duration window) {
+            this.emitter = emitter ;
+            this.machineIds = machineIds ;
+            this.window = window ;
+        }
+    }
+}
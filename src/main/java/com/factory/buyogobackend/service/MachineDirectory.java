@@ -0,0 +1,72 @@
+package com.factory.buyogobackend.service;
+
+import com.factory.buyogobackend.model.Machine;
+import com.factory.buyogobackend.repository.MachineRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+    In-memory copy of the machines table: machineId -> Machine and factoryId -> machineIds.
+
+    Readers always see one consistent snapshot; reload() swaps in a new one. Machines written through
+    JPA trigger a reload (MachineChangeListener publishes MachinesChangedEvent), rows inserted by other
+    means need POST /machines/reload.
+    Factory and line ids are stored as interned keys (CatalogueKeyConverter), so the line rollup writers
+    inside a batch transaction only look their keys up.
+*/
+@Slf4j
+@Component
+public class MachineDirectory {
+
+    @Autowired
+    private MachineRepository machineRepository ;
+
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), Map.of()) ;
+
+    public void reload() {
+
+        Map<String, Machine> byId = new HashMap<>() ;
+        Map<String, Set<String>> byFactory = new HashMap<>() ;
+        for(Machine m : machineRepository.findAll()){
+            byId.put(m.getMachineId(), m) ;
+            if( m.getFactoryId() != null ) {
+                byFactory.computeIfAbsent(m.getFactoryId(), f -> new HashSet<>()).add(m.getMachineId()) ;
+            }
+        }
+        byFactory.replaceAll((f, ids) -> Set.copyOf(ids)) ;
+
+        snapshot = new Snapshot(Map.copyOf(byId), Map.copyOf(byFactory)) ;
+        log.info("machine directory loaded, {} machines in {} factories", byId.size(), byFactory.size());
+    }
+
+    public Machine find(String machineId) {
+        return snapshot.byId().get(machineId) ;
+    }
+
+    public Set<String> machinesOfFactory(String factoryId) {
+        return snapshot.byFactory().getOrDefault(factoryId, Set.of()) ;
+    }
+
+    public List<String> machinesOfLine(String factoryId, String lineId) {
+        // one read, a reload between two reads could drop a machine the first snapshot listed
+        Snapshot current = snapshot ;
+        return current.byFactory().getOrDefault(factoryId, Set.of()).stream()
+                .filter(id -> lineId.equals(current.byId().get(id).getLineId()))
+                .sorted()
+                .toList() ;
+    }
+
+    public int size() {
+        return snapshot.byId().size() ;
+    }
+
+    private record Snapshot(Map<String, Machine> byId, Map<String, Set<String>> byFactory) {
+    }
+}
@@ -0,0 +1,107 @@
+package com.factory.buyogobackend.service;
+
+import com.factory.buyogobackend.dto.RetentionResponse;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.factory.buyogobackend.repository.LineStatsBucketRepository;
+import com.factory.buyogobackend.repository.MachineStatsBucketRepository;
+import com.factory.buyogobackend.repository.hot.HotEventTier;
+import com.factory.buyogobackend.repository.jdbc.KnownEventIds;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/*
+    Drops events whose eventTime is older than `events.retention.days` whole days, together with
+    their machine / line rollup buckets, so storage stops growing.
+
+    The cutoff is always midnight, so whole day partitions (and whole hourly buckets) go at once and no
+    bucket is left half counted. The day tables are dropped, not deleted row by row; only their
+    eventIds are removed from event_days, in chunks of `delete-chunk`, each chunk in its own transaction.
+    Bucket rows are deleted per machine; machines are taken from machine_stats_buckets.
+
+    From the start of a run events of the dropped days are ignored by the write path (EventPartitions'
+    horizon); a batch that was already writing such a day is waited for by the DROP.
+*/
+@Slf4j
+@Service
+public class RetentionService {
+
+    @Value("${events.retention.days:0}")
+    private int retentionDays ;
+
+    @Value("${events.retention.delete-chunk:10000}")
+    private int deleteChunk ;
+
+    @Autowired
+    private EventRepository eventRepository ;
+
+    @Autowired
+    private MachineStatsBucketRepository machineBucketRepository ;
+
+    @Autowired
+    private LineStatsBucketRepository lineBucketRepository ;
+
+    @Autowired
+    private StatsCache statsCache ;
+
+    @Autowired
+    private KnownEventIds knownEventIds ;
+
+    @Autowired
+    private HotEventTier hotEventTier ;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager ;
+
+    public boolean isEnabled() {
+        return retentionDays > 0 ;
+    }
+
+    @Scheduled(cron = "${events.retention.cron:0 15 0 * * *}")
+    public void scheduledPurge() {
+        if( isEnabled() ) purge() ;
+    }
+
+    public RetentionResponse purge() {
+        return purgeBefore(LocalDate.now().minusDays(retentionDays).atStartOfDay()) ;
+    }
+
+    // a cutoff inside a day keeps that day
+    public RetentionResponse purgeBefore(LocalDateTime before) {
+
+        LocalDate cutoffDay = before.toLocalDate() ;
+        LocalDateTime cutoff = cutoffDay.atStartOfDay() ;
+        TransactionTemplate tx = new TransactionTemplate(transactionManager) ;
+        long deletedEvents = 0 ;
+        long deletedBuckets = 0 ;
+
+        List<LocalDate> droppedDays = eventRepository.dropDaysBefore(cutoffDay) ;
+        int deleted ;
+        do {
+            deleted = tx.execute(status -> eventRepository.deleteDroppedIds(cutoffDay, deleteChunk)) ;
+            deletedEvents += deleted ;
+        } while( deleted == deleteChunk ) ;
+
+        for(String machineId : machineBucketRepository.findMachineIdsBefore(cutoff)){
+            deletedBuckets += tx.execute(status -> machineBucketRepository.deleteBefore(machineId, cutoff)) ;
+        }
+        deletedBuckets += tx.execute(status -> lineBucketRepository.deleteBefore(cutoff)) ;
+
+        hotEventTier.evictBefore(cutoff) ;
+        // cached windows and recent payloads may describe rows that are gone now
+        statsCache.invalidateAll() ;
+        knownEventIds.clear() ;
+
+        log.info("retention: dropped {} day partitions with {} events and {} buckets before {}",
+                droppedDays.size(), deletedEvents, deletedBuckets, cutoff);
+        return new RetentionResponse(cutoff, deletedEvents, deletedBuckets) ;
+    }
+}
@@ -0,0 +1,158 @@
+package com.factory.buyogobackend.service;
+
+import com.factory.buyogobackend.dto.CacheStatsResponse;
+import com.factory.buyogobackend.dto.QueryStatsResponse;
+import com.factory.buyogobackend.model.Event;
+import com.factory.buyogobackend.repository.jdbc.UpsertResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+    Bounded LRU cache of /stats responses keyed by (machineId, start, end).
+
+    A committed batch removes only the entries of the touched machines whose window contains one of
+    the written (or superseded) eventTimes. Every machine also has a version that is bumped on
+    invalidation; a response computed while a write was committing is not stored because the version
+    it was computed under is no longer current.
+*/
+@Component
+public class StatsCache {
+
+    private final int maxEntries ;
+
+    private final LinkedHashMap<Key, QueryStatsResponse> entries ;
+    private final Map<String, Set<Key>> keysByMachine = new HashMap<>() ;
+    private final Map<String, Long> versions = new HashMap<>() ;
+    // bumped by invalidateAll(), part of every machine's version
+    private long generation ;
+
+    private long hits ;
+    private long misses ;
+    private long evictions ;
+    private long invalidations ;
+
+    public StatsCache(@Value("${events.stats-cache.max-entries:10000}") int maxEntries) {
+        this.maxEntries = maxEntries ;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, QueryStatsResponse> eldest) {
+                if( size() <= StatsCache.this.maxEntries ) return false ;
+                unindex(eldest.getKey()) ;
+                evictions++ ;
+                return true ;
+            }
+        };
+    }
+
+    public synchronized QueryStatsResponse get(String machineId, LocalDateTime start, LocalDateTime end) {
+        QueryStatsResponse response = entries.get(new Key(machineId, start, end)) ;
+        if( response == null ) misses++ ;
+        else hits++ ;
+        return response ;
+    }
+
+    public synchronized long version(String machineId) {
+        return generation + versions.getOrDefault(machineId, 0L) ;
+    }
+
+    public synchronized void put(QueryStatsResponse response, long version) {
+        String machineId = response.getMachineId() ;
+        if( maxEntries <= 0 || version != version(machineId) ) return ;
+
+        Key key = new Key(machineId, response.getStart(), response.getEnd()) ;
+        keysByMachine.computeIfAbsent(machineId, m -> new HashSet<>()).add(key) ;
+        entries.put(key, response) ;
+    }
+
+    // invalidates after the surrounding transaction commits, or right away when there is none
+    public void invalidate(UpsertResult result) {
+
+        List<Event> touched = new ArrayList<>(result.getInserted()) ;
+        touched.addAll(result.getUpdated()) ;
+        touched.addAll(result.getSuperseded()) ;
+        if( touched.isEmpty() ) return ;
+
+        if( TransactionSynchronizationManager.isSynchronizationActive() ) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(touched) ;
+                }
+            });
+        } else {
+            invalidate(touched) ;
+        }
+    }
+
+    // for deletes that are not tied to a batch (retention)
+    public synchronized void invalidateAll() {
+        invalidations += entries.size() ;
+        entries.clear() ;
+        keysByMachine.clear() ;
+        generation++ ;
+    }
+
+    public synchronized CacheStatsResponse snapshot() {
+        return new CacheStatsResponse(entries.size(), maxEntries, hits, misses, evictions, invalidations) ;
+    }
+
+    private synchronized void invalidate(List<Event> touched) {
+
+        Map<String, List<LocalDateTime>> timesByMachine = new HashMap<>() ;
+        for(Event e : touched){
+            timesByMachine.computeIfAbsent(e.getMachineId(), m -> new ArrayList<>()).add(stored(e.getEventTime())) ;
+        }
+
+        for(Map.Entry<String, List<LocalDateTime>> entry : timesByMachine.entrySet()){
+            String machineId = entry.getKey() ;
+            versions.merge(machineId, 1L, Long::sum) ;
+
+            Set<Key> keys = keysByMachine.get(machineId) ;
+            if( keys == null ) continue ;
+
+            Iterator<Key> it = keys.iterator() ;
+            while( it.hasNext() ){
+                Key key = it.next() ;
+                if( entry.getValue().stream().anyMatch(key::covers) ) {
+                    entries.remove(key) ;
+                    it.remove() ;
+                    invalidations++ ;
+                }
+            }
+            if( keys.isEmpty() ) keysByMachine.remove(machineId) ;
+        }
+    }
+
+    // the eventTime the stats queries will see: TIMESTAMP(6) rounds half up to microseconds, so an event
+    // just before a cached window's start can land inside it
+    private static LocalDateTime stored(LocalDateTime eventTime) {
+        return eventTime.plusNanos(500).truncatedTo(ChronoUnit.MICROS) ;
+    }
+
+    private void unindex(Key key) {
+        Set<Key> keys = keysByMachine.get(key.machineId()) ;
+        if( keys == null ) return ;
+        keys.remove(key) ;
+        if( keys.isEmpty() ) keysByMachine.remove(key.machineId()) ;
+    }
+
+    private record Key(String machineId, LocalDateTime start, LocalDateTime end) {
+
+        boolean covers(LocalDateTime eventTime) {
+            return !eventTime.isBefore(start) && eventTime.isBefore(end) ;
+        }
+    }
+}
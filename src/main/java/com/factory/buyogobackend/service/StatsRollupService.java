@@ -0,0 +1,136 @@
+package com.factory.buyogobackend.service;
+
+import com.factory.buyogobackend.model.Event;
+import com.factory.buyogobackend.model.MachineStatsBucket;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.factory.buyogobackend.repository.MachineStatsBucketRepository;
+import com.factory.buyogobackend.repository.hot.HotEventTier;
+import com.factory.buyogobackend.repository.jdbc.UpsertResult;
+import com.factory.buyogobackend.repository.keys.KeyDictionary;
+import com.factory.buyogobackend.repository.keys.KeyKind;
+import com.factory.buyogobackend.repository.projection.MachineStatsProjection;
+import com.factory.buyogobackend.repository.projection.StatsProjection;
+import com.factory.buyogobackend.repository.projection.StatsTotals;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Maintains the hourly machine_stats_buckets rollup and answers stats windows from it.
+
+    A window [start, end) is answered as
+        raw rows [start, first full bucket) + buckets [first full bucket, last full bucket) + raw rows [last full bucket, end)
+    so at most two partial hours are scanned on idx_machine_time, whatever the window length.
+    Windows inside the hot tier's range are answered from memory instead.
+*/
+@Service
+public class StatsRollupService {
+
+    static final ChronoUnit BUCKET_UNIT = ChronoUnit.HOURS ;
+
+    @Autowired
+    private MachineStatsBucketRepository bucketRepository ;
+
+    @Autowired
+    private EventRepository eventRepository ;
+
+    @Autowired
+    private HotEventTier hotEventTier ;
+
+    @Autowired
+    private KeyDictionary keyDictionary ;
+
+    // must run in the transaction that wrote the events
+    public void apply(UpsertResult result) {
+
+        Map<MachineStatsBucket.Key, MachineStatsBucket> deltas = new HashMap<>() ;
+        result.getInserted().forEach(e -> addDelta(deltas, e, 1)) ;
+        result.getUpdated().forEach(e -> addDelta(deltas, e, 1)) ;
+        result.getSuperseded().forEach(e -> addDelta(deltas, e, -1)) ;
+
+        bucketRepository.applyDeltas(deltas.values()) ;
+    }
+
+    public StatsProjection fetchStats(String machineId, LocalDateTime start, LocalDateTime end) {
+
+        if( hotEventTier.covers(start) ) {
+            return hotEventTier.stats(machineId, start, end) ;
+        }
+
+        LocalDateTime firstFull = ceilBucket(start) ;
+        LocalDateTime lastFull = floorBucket(end) ;
+        if( !firstFull.isBefore(lastFull) ) {
+            return eventRepository.fetchStats(machineId, start, end) ;
+        }
+
+        StatsTotals totals = new StatsTotals(0, 0)
+                .plus(bucketRepository.sumBuckets(machineId, firstFull, lastFull)) ;
+        if( start.isBefore(firstFull) ) {
+            totals = totals.plus(eventRepository.fetchStats(machineId, start, firstFull)) ;
+        }
+        if( lastFull.isBefore(end) ) {
+            totals = totals.plus(eventRepository.fetchStats(machineId, lastFull, end)) ;
+        }
+        return totals ;
+    }
+
+    // same split as fetchStats for all machineIds, the repositories fan each part out per machine; machines without events are absent
+    public Map<String, StatsTotals> fetchStatsByMachine(Collection<String> machineIds, LocalDateTime start, LocalDateTime end) {
+
+        Map<String, StatsTotals> totals = new HashMap<>() ;
+        if( hotEventTier.covers(start) ) {
+            merge(totals, hotEventTier.statsByMachine(machineIds, start, end)) ;
+            return totals ;
+        }
+
+        LocalDateTime firstFull = ceilBucket(start) ;
+        LocalDateTime lastFull = floorBucket(end) ;
+        if( !firstFull.isBefore(lastFull) ) {
+            merge(totals, eventRepository.fetchStatsByMachine(machineIds, start, end)) ;
+            return totals ;
+        }
+
+        merge(totals, bucketRepository.sumBucketsByMachine(machineIds, firstFull, lastFull)) ;
+        if( start.isBefore(firstFull) ) {
+            merge(totals, eventRepository.fetchStatsByMachine(machineIds, start, firstFull)) ;
+        }
+        if( lastFull.isBefore(end) ) {
+            merge(totals, eventRepository.fetchStatsByMachine(machineIds, lastFull, end)) ;
+        }
+        return totals ;
+    }
+
+    static LocalDateTime floorBucket(LocalDateTime time) {
+        return time.truncatedTo(BUCKET_UNIT) ;
+    }
+
+    static LocalDateTime ceilBucket(LocalDateTime time) {
+        LocalDateTime floor = floorBucket(time) ;
+        return floor.equals(time) ? floor : floor.plus(1, BUCKET_UNIT) ;
+    }
+
+    private void merge(Map<String, StatsTotals> totals, List<MachineStatsProjection> rows) {
+        for(MachineStatsProjection row : rows){
+            totals.merge(row.getMachineId(), new StatsTotals(row.getEventsCount(), row.getDefectsCount()), StatsTotals::plus) ;
+        }
+    }
+
+    private void addDelta(Map<MachineStatsBucket.Key, MachineStatsBucket> deltas, Event event, int sign) {
+
+        // interned by processBatch before its transaction opened
+        int machineKey = keyDictionary.requireKey(KeyKind.MACHINE, event.getMachineId()) ;
+        MachineStatsBucket.Key key = new MachineStatsBucket.Key(machineKey, floorBucket(event.getEventTime())) ;
+        MachineStatsBucket delta = deltas.computeIfAbsent(key,
+                k -> new MachineStatsBucket(k.getMachineKey(), k.getBucketStart(), 0, 0)) ;
+
+        int defects = event.getDefectCount() == -1 ? 0 : event.getDefectCount() ;
+        delta.setEventCount(delta.getEventCount() + sign);
+        delta.setDefectSum(delta.getDefectSum() + (long) sign * defects);
+    }
+}
@@ -0,0 +1,104 @@
+package com.factory.buyogobackend.service;
+
+import com.factory.buyogobackend.dto.StatsSeriesPoint;
+import com.factory.buyogobackend.metrics.IngestMetrics;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.factory.buyogobackend.repository.MachineStatsBucketRepository;
+import com.factory.buyogobackend.repository.hot.HotEventTier;
+import com.factory.buyogobackend.repository.projection.SliceTotals;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/*
+    Per-slice event counts, defect sums and defect rate over [start, end), for one machine or a set of
+    machines (a line). Slice i is [start + i * interval, start + (i + 1) * interval), the last one is cut at end.
+
+    Slices are grouped in SQL, so a series costs one grouped query per machine (and ScanFanOut slice)
+    whatever the number of slices:
+      - interval a whole number of hours and start on the hour: every slice is made of whole hourly
+        buckets, so machine_stats_buckets answers [start, last full hour) and only the trailing
+        partial hour is scanned on idx_machine_time
+      - otherwise one grouped scan of the window on idx_machine_time
+    Windows inside the hot tier's range are sliced in memory instead.
+
+    Slices are computed in whole milliseconds (DATEDIFF('MILLISECOND') in SQL), so sub-millisecond
+    bounds are widened to the enclosing milliseconds: start rounded down, end rounded up.
+*/
+@Service
+public class StatsSeriesService {
+
+    static final Duration MIN_INTERVAL = Duration.ofMinutes(1) ;
+    static final int MAX_POINTS = 10_000 ;
+
+    @Autowired
+    private MachineStatsBucketRepository bucketRepository ;
+
+    @Autowired
+    private EventRepository eventRepository ;
+
+    @Autowired
+    private HotEventTier hotEventTier ;
+
+    @Autowired
+    private IngestMetrics metrics ;
+
+    // null when the window or interval is invalid or would produce more than MAX_POINTS slices
+    public List<StatsSeriesPoint> series(Collection<String> machineIds, LocalDateTime start, LocalDateTime end, Duration interval) {
+
+        if( !start.isBefore(end) || interval.compareTo(MIN_INTERVAL) < 0 ) return null ;
+        start = start.truncatedTo(ChronoUnit.MILLIS) ;
+        LocalDateTime endMillis = end.truncatedTo(ChronoUnit.MILLIS) ;
+        end = endMillis.isBefore(end) ? endMillis.plus(1, ChronoUnit.MILLIS) : endMillis ;
+
+        long intervalMillis = interval.toMillis() ;
+        long windowMillis = Duration.between(start, end).toMillis() ;
+        long slices = (windowMillis + intervalMillis - 1) / intervalMillis ;
+        if( slices > MAX_POINTS ) return null ;
+
+        long started = IngestMetrics.start() ;
+        long[] events = new long[(int) slices] ;
+        long[] defects = new long[(int) slices] ;
+
+        boolean hourAligned = intervalMillis % Duration.ofHours(1).toMillis() == 0
+                && start.equals(StatsRollupService.floorBucket(start)) ;
+        LocalDateTime lastFull = StatsRollupService.floorBucket(end) ;
+        if( hotEventTier.covers(start) ) {
+            add(events, defects, hotEventTier.statsBySlice(machineIds, start, end, intervalMillis, events.length)) ;
+        } else if( hourAligned && start.isBefore(lastFull) ) {
+            add(events, defects, bucketRepository.sumBucketsBySlice(machineIds, start, intervalMillis, start, lastFull)) ;
+            if( lastFull.isBefore(end) ) {
+                add(events, defects, eventRepository.fetchStatsBySlice(machineIds, start, intervalMillis, lastFull, end)) ;
+            }
+        } else {
+            add(events, defects, eventRepository.fetchStatsBySlice(machineIds, start, intervalMillis, start, end)) ;
+        }
+        metrics.seriesQuery(started) ;
+
+        List<StatsSeriesPoint> points = new ArrayList<>(events.length) ;
+        for(int i = 0; i < events.length; i++){
+            LocalDateTime sliceStart = start.plus(interval.multipliedBy(i)) ;
+            LocalDateTime sliceEnd = sliceStart.plus(interval) ;
+            if( sliceEnd.isAfter(end) ) sliceEnd = end ;
+
+            double sliceHours = Duration.between(sliceStart, sliceEnd).getSeconds() / 3600.0 ;
+            double avgDefectRate = (sliceHours > 0) ? defects[i] / sliceHours : 0.0 ;
+            points.add(new StatsSeriesPoint(sliceStart, sliceEnd, events[i], defects[i], avgDefectRate)) ;
+        }
+        return points ;
+    }
+
+    private void add(long[] events, long[] defects, List<SliceTotals> rows) {
+        for(SliceTotals row : rows){
+            int slice = (int) row.getSlice() ;
+            events[slice] += row.getEventsCount() ;
+            defects[slice] += row.getDefectsCount() ;
+        }
+    }
+}
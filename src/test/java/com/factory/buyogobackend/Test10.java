@@ -0,0 +1,75 @@
+package com.factory.buyogobackend;
+
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//  TEST 10: Mixed batch against stored rows → exact insert / dedup / update counts
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class Test10 {
+
+    @Autowired
+    private MockMvc mockMvc ;
+    @Autowired
+    private ObjectMapper objectMapper ;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    private final LocalDateTime eventTime = LocalDateTime.now().minusMinutes(5).withNano(0);
+
+    @BeforeEach
+    void clearDb() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    void mixedBatch_countsAreExact() throws Exception {
+        mockMvc.perform(post("/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(validEvent("E-10"), validEvent("E-11")))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(2));
+
+        EventRequestDTO changed = validEvent("E-11");
+        changed.setDefectCount(7);
+
+        mockMvc.perform(post("/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(validEvent("E-10"), changed, validEvent("E-12")))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.deduped").value(1))
+                .andExpect(jsonPath("$.updated").value(1));
+
+        assertThat(eventRepository.count()).isEqualTo(3);
+        assertThat(eventRepository.findById("E-11").orElseThrow().getDefectCount()).isEqualTo(7);
+    }
+
+    private EventRequestDTO validEvent(String id) {
+        EventRequestDTO dto = new EventRequestDTO();
+        dto.setEventId(id);
+        dto.setMachineId("M-001");
+        dto.setEventTime(eventTime);
+        dto.setDurationMs(1000);
+        dto.setDefectCount(1);
+        return dto;
+    }
+}
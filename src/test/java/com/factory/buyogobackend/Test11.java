@@ -0,0 +1,86 @@
+package com.factory.buyogobackend;
+
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//  TEST 11: Multi-hour stats window (rollup buckets + raw edges) follows inserts and updates
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class Test11 {
+
+    @Autowired
+    private MockMvc mockMvc ;
+    @Autowired
+    private ObjectMapper objectMapper ;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    private final LocalDateTime base = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(6);
+
+    @BeforeEach
+    void clearDb() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    void wideWindowStats_followInsertsAndUpdates() throws Exception {
+        EventRequestDTO edgeStart = validEvent("E-R1", base.plusMinutes(10), 2);
+        EventRequestDTO fullHour = validEvent("E-R2", base.plusMinutes(90), 3);
+        EventRequestDTO edgeEnd = validEvent("E-R3", base.plusMinutes(125), -1);
+        EventRequestDTO outside = validEvent("E-R4", base.plusMinutes(150), 4);
+
+        post(List.of(edgeStart, fullHour, edgeEnd, outside));
+        expectStats(3, 5);
+
+        EventRequestDTO moved = validEvent("E-R2", base.plusMinutes(200), 9);
+        Thread.sleep(10);
+        post(List.of(moved));
+        expectStats(2, 2);
+    }
+
+    private void post(List<EventRequestDTO> events) throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(events)))
+                .andExpect(status().isOk());
+    }
+
+    private void expectStats(long events, long defects) throws Exception {
+        mockMvc.perform(get("/stats")
+                        .param("machineId", "M-011")
+                        .param("start", base.plusMinutes(5).toString())
+                        .param("end", base.plusMinutes(140).toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.eventsCount").value(events))
+                .andExpect(jsonPath("$.defectsCount").value(defects));
+    }
+
+    private EventRequestDTO validEvent(String id, LocalDateTime eventTime, int defects) {
+        EventRequestDTO dto = new EventRequestDTO();
+        dto.setEventId(id);
+        dto.setMachineId("M-011");
+        dto.setEventTime(eventTime);
+        dto.setDurationMs(1000);
+        dto.setDefectCount(defects);
+        return dto;
+    }
+}
@@ -0,0 +1,113 @@
+package com.factory.buyogobackend;
+
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//  TEST 12: Repeated /stats polls are cached, a write inside the window invalidates them
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class Test12 {
+
+    @Autowired
+    private MockMvc mockMvc ;
+    @Autowired
+    private ObjectMapper objectMapper ;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    private final LocalDateTime start = LocalDateTime.now().minusMinutes(30).withNano(0);
+    private final LocalDateTime end = start.plusMinutes(20);
+
+    @BeforeEach
+    void clearDb() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    void repeatedPolls_areCachedUntilWindowChanges() throws Exception {
+        post(validEvent("E-C1", start.plusMinutes(1)));
+
+        expectCount(1);
+        long hits = cacheHits();
+        expectCount(1);
+        assertHitsAtLeast(hits + 1);
+
+        // outside the window: cached entry survives
+        post(validEvent("E-C2", end.plusMinutes(1)));
+        hits = cacheHits();
+        expectCount(1);
+        assertHitsAtLeast(hits + 1);
+
+        // inside the window: cached entry is dropped
+        post(validEvent("E-C3", start.plusMinutes(2)));
+        expectCount(2);
+    }
+
+    @Test
+    void eventRoundedIntoTheWindow_invalidatesIt() throws Exception {
+        LocalDateTime windowStart = start.plusNanos(1_000);
+
+        expectCount(windowStart, 0);
+        // 400 ns before the window, stored rounded up to its first microsecond
+        post(validEvent("E-C4", windowStart.minusNanos(400)));
+        expectCount(windowStart, 1);
+    }
+
+    private void post(EventRequestDTO event) throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(event))))
+                .andExpect(status().isOk());
+    }
+
+    private void expectCount(long events) throws Exception {
+        expectCount(start, events);
+    }
+
+    private void expectCount(LocalDateTime start, long events) throws Exception {
+        mockMvc.perform(get("/stats")
+                        .param("machineId", "M-012")
+                        .param("start", start.toString())
+                        .param("end", end.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.eventsCount").value(events));
+    }
+
+    private long cacheHits() throws Exception {
+        String body = mockMvc.perform(get("/stats/cache")).andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("hits").asLong();
+    }
+
+    private void assertHitsAtLeast(long expected) throws Exception {
+        assertThat(cacheHits()).isGreaterThanOrEqualTo(expected);
+    }
+
+    private EventRequestDTO validEvent(String id, LocalDateTime eventTime) {
+        EventRequestDTO dto = new EventRequestDTO();
+        dto.setEventId(id);
+        dto.setMachineId("M-012");
+        dto.setEventTime(eventTime);
+        dto.setDurationMs(1000);
+        dto.setDefectCount(1);
+        return dto;
+    }
+}
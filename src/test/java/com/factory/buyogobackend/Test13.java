@@ -0,0 +1,99 @@
+package com.factory.buyogobackend;
+
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//  TEST 13: Async batch → 202 with batch id, status endpoint returns the final BatchResponse
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class Test13 {
+
+    @Autowired
+    private MockMvc mockMvc ;
+    @Autowired
+    private ObjectMapper objectMapper ;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @BeforeEach
+    void clearDb() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    void asyncBatch_isAcknowledgedThenCompleted() throws Exception {
+        EventRequestDTO bad = validEvent("E-A3");
+        bad.setDurationMs(-5);
+
+        String accepted = mockMvc.perform(post("/events/batch/async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(validEvent("E-A1"), validEvent("E-A2"), bad))))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.rejections[0].eventId").value("E-A3"))
+                .andExpect(jsonPath("$.rejections[0].reason").value("INVALID_DURATION"))
+                .andReturn().getResponse().getContentAsString();
+        String batchId = objectMapper.readTree(accepted).get("batchId").asText();
+
+        JsonNode status = null;
+        for (int i = 0; i < 100; i++) {
+            String body = mockMvc.perform(get("/events/batch/" + batchId))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            status = objectMapper.readTree(body);
+            if (!"QUEUED".equals(status.get("status").asText())) break;
+            Thread.sleep(50);
+        }
+
+        assertThat(status.get("status").asText()).isEqualTo("COMPLETED");
+        assertThat(status.get("result").get("accepted").asInt()).isEqualTo(2);
+        assertThat(status.get("result").get("rejected").asInt()).isEqualTo(1);
+        assertThat(status.get("result").get("rejections").get(0).get("eventId").asText()).isEqualTo("E-A3");
+        assertThat(eventRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    void asyncBatchWithoutAValidEvent_isRejectedAtOnce() throws Exception {
+        EventRequestDTO bad = validEvent("E-A4");
+        bad.setMachineId(null);
+
+        mockMvc.perform(post("/events/batch/async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(bad))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"))
+                .andExpect(jsonPath("$.result.accepted").value(0))
+                .andExpect(jsonPath("$.result.rejected").value(1))
+                .andExpect(jsonPath("$.result.rejections[0].reason").value("NULL_MACHINE_ID"));
+        assertThat(eventRepository.count()).isZero();
+    }
+
+    private EventRequestDTO validEvent(String id) {
+        EventRequestDTO dto = new EventRequestDTO();
+        dto.setEventId(id);
+        dto.setMachineId("M-013");
+        dto.setEventTime(LocalDateTime.now().minusMinutes(5));
+        dto.setDurationMs(1000);
+        dto.setDefectCount(1);
+        return dto;
+    }
+}
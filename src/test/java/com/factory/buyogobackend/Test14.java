@@ -0,0 +1,113 @@
+package com.factory.buyogobackend;
+
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.model.Machine;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.factory.buyogobackend.repository.MachineRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//  TEST 14: Top defect lines over a multi-hour window follow inserts and updates, limited to top K
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class Test14 {
+
+    @Autowired
+    private MockMvc mockMvc ;
+    @Autowired
+    private ObjectMapper objectMapper ;
+
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private MachineRepository machineRepository;
+
+    private final LocalDateTime base = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(6);
+
+    @BeforeEach
+    void clearDb() {
+        eventRepository.deleteAll();
+        machineRepository.deleteAll();
+        machineRepository.saveAll(List.of(
+                machine("M-L1", "F-14", "L-1"),
+                machine("M-L2", "F-14", "L-2"),
+                machine("M-L3", "F-14", "L-3"),
+                machine("M-X", "F-OTHER", "L-1")));
+    }
+
+    @Test
+    void topDefectLines_followInsertsAndUpdates() throws Exception {
+        post(List.of(
+                validEvent("E-T1", "M-L1", base.plusMinutes(10), 2),
+                validEvent("E-T2", "M-L1", base.plusMinutes(90), 3),
+                validEvent("E-T3", "M-L2", base.plusMinutes(95), 4),
+                validEvent("E-T4", "M-L3", base.plusMinutes(125), 1),
+                validEvent("E-T5", "M-X", base.plusMinutes(90), 50)));
+
+        mockMvc.perform(get("/stats/top-defect-lines")
+                        .param("factoryId", "F-14")
+                        .param("from", base.plusMinutes(5).toString())
+                        .param("to", base.plusMinutes(140).toString())
+                        .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].lineId").value("L-1"))
+                .andExpect(jsonPath("$[0].totalDefects").value(5))
+                .andExpect(jsonPath("$[0].eventCount").value(2))
+                .andExpect(jsonPath("$[1].lineId").value("L-2"));
+
+        Thread.sleep(10);
+        post(List.of(validEvent("E-T3", "M-L2", base.plusMinutes(95), 20)));
+
+        mockMvc.perform(get("/stats/top-defect-lines")
+                        .param("factoryId", "F-14")
+                        .param("from", base.plusMinutes(5).toString())
+                        .param("to", base.plusMinutes(140).toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].lineId").value("L-2"))
+                .andExpect(jsonPath("$[0].totalDefects").value(20))
+                .andExpect(jsonPath("$[1].lineId").value("L-1"));
+    }
+
+    private void post(List<EventRequestDTO> events) throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(events)))
+                .andExpect(status().isOk());
+    }
+
+    private Machine machine(String machineId, String factoryId, String lineId) {
+        Machine machine = new Machine();
+        machine.setMachineId(machineId);
+        machine.setFactoryId(factoryId);
+        machine.setLineId(lineId);
+        return machine;
+    }
+
+    private EventRequestDTO validEvent(String id, String machineId, LocalDateTime eventTime, int defects) {
+        EventRequestDTO dto = new EventRequestDTO();
+        dto.setEventId(id);
+        dto.setMachineId(machineId);
+        dto.setEventTime(eventTime);
+        dto.setDurationMs(1000);
+        dto.setDefectCount(defects);
+        return dto;
+    }
+}
@@ -0,0 +1,80 @@
+package com.factory.buyogobackend;
+
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//  TEST 15: Batch stages, rejection reasons and batch sizes are recorded as metrics
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class Test15 {
+
+    @Autowired
+    private MockMvc mockMvc ;
+    @Autowired
+    private ObjectMapper objectMapper ;
+    @Autowired
+    private MeterRegistry registry ;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @BeforeEach
+    void clearDb() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    void processBatch_recordsStagesAndRejections() throws Exception {
+        double invalidDuration = rejected("INVALID_DURATION");
+        long lookups = registry.get("events.ingest.stage").tag("stage", "lookup").timer().count();
+
+        EventRequestDTO bad = validEvent("E-M2");
+        bad.setDurationMs(-1);
+
+        mockMvc.perform(post("/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(validEvent("E-M1"), bad))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rejected").value(1));
+
+        assertThat(rejected("INVALID_DURATION")).isEqualTo(invalidDuration + 1);
+        assertThat(registry.get("events.ingest.stage").tag("stage", "lookup").timer().count()).isEqualTo(lookups + 1);
+
+        mockMvc.perform(get("/actuator/metrics/events.ingest.batch.size"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.measurements[?(@.statistic == 'MAX')].value").exists());
+    }
+
+    private double rejected(String reason) {
+        return registry.get("events.ingest.rejected").tag("reason", reason).counter().count();
+    }
+
+    private EventRequestDTO validEvent(String id) {
+        EventRequestDTO dto = new EventRequestDTO();
+        dto.setEventId(id);
+        dto.setMachineId("M-015");
+        dto.setEventTime(LocalDateTime.now().minusMinutes(5));
+        dto.setDurationMs(1000);
+        dto.setDefectCount(1);
+        return dto;
+    }
+}
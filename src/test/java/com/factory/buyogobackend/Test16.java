@@ -0,0 +1,86 @@
+package com.factory.buyogobackend;
+
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.model.Event;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.factory.buyogobackend.service.EventService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//  TEST 16: Concurrent batches with overlapping eventIds all succeed and converge to the newest payload
+
+@SpringBootTest
+public class Test16 {
+
+    private static final int THREADS = 8 ;
+    private static final int IDS = 200 ;
+
+    @Autowired
+    private EventService eventService ;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    private final LocalDateTime base = LocalDateTime.now().minusMinutes(30).withNano(0);
+
+    @BeforeEach
+    void clearDb() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    void overlappingBatches_convergeToNewestPayload() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            results.add(executor.submit(() -> {
+                List<EventRequestDTO> batch = new ArrayList<>();
+                for (int i = 0; i < IDS; i++) batch.add(event("E-S" + i, thread));
+                Collections.shuffle(batch);
+                start.await();
+                // a later thread index means a later receivedTime
+                return eventService.processBatch(batch, base.plusSeconds(thread + 1));
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) result.get();
+        executor.shutdown();
+
+        List<Event> stored = eventRepository.findAll();
+        assertThat(stored).hasSize(IDS);
+        assertThat(stored).allSatisfy(e -> {
+            assertThat(e.getDefectCount()).isEqualTo(THREADS - 1);
+            assertThat(e.getReceivedTime()).isEqualTo(base.plusSeconds(THREADS));
+        });
+
+        // the hourly rollup saw exactly one live version per id
+        assertThat(eventService.getStats("M-016", base.minusHours(2), base.plusHours(2)).getEventsCount())
+                .isEqualTo(IDS);
+    }
+
+    private EventRequestDTO event(String id, int thread) {
+        EventRequestDTO dto = new EventRequestDTO();
+        dto.setEventId(id);
+        dto.setMachineId("M-016");
+        dto.setEventTime(base.minusMinutes(10));
+        dto.setDurationMs(1000);
+        dto.setDefectCount(thread);
+        return dto;
+    }
+}
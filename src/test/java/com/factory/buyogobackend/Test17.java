@@ -0,0 +1,107 @@
+package com.factory.buyogobackend;
+
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.model.Event;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.factory.buyogobackend.repository.jdbc.EventPartitions;
+import com.factory.buyogobackend.repository.keys.KeyDictionary;
+import com.factory.buyogobackend.repository.keys.KeyKind;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//  TEST 17: New ids and retransmissions skip the DB lookup, rows written behind the index still resolve correctly
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class Test17 {
+
+    @Autowired
+    private MockMvc mockMvc ;
+    @Autowired
+    private ObjectMapper objectMapper ;
+    @Autowired
+    private MeterRegistry registry ;
+    @Autowired
+    private JdbcTemplate jdbcTemplate ;
+
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private KeyDictionary keyDictionary;
+    @Autowired
+    private EventPartitions eventPartitions;
+
+    private final LocalDateTime eventTime = LocalDateTime.now().minusMinutes(10).withNano(0);
+
+    @BeforeEach
+    void clearDb() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    void newIdsAndRetransmissions_skipLookup() throws Exception {
+        double skipped = skipped();
+        List<EventRequestDTO> batch = List.of(validEvent("E-K1", 1), validEvent("E-K2", 1));
+
+        postBatch(batch).andExpect(jsonPath("$.accepted").value(2));
+        postBatch(batch).andExpect(jsonPath("$.deduped").value(2));
+
+        assertThat(skipped()).isEqualTo(skipped + 4);
+    }
+
+    @Test
+    void rowWrittenOutsideTheService_isStillUpdated() throws Exception {
+        LocalDate day = EventPartitions.dayOf(eventTime);
+        eventPartitions.create(List.of(day));
+        long hash = Event.hashPayload("M-017", eventTime, 1000, 1);
+        jdbcTemplate.update("INSERT INTO " + eventPartitions.table(day) + " (event_id, machine_key, event_time, received_time, duration_ms, defect_count, payload_hash) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)", "E-K3", keyDictionary.intern(KeyKind.MACHINE, "M-017"), eventTime, eventTime, 1000, 1, hash);
+        jdbcTemplate.update("INSERT INTO event_days (event_id, event_day, received_time, payload_hash) VALUES (?, ?, ?, ?)",
+                "E-K3", day, eventTime, hash);
+
+        postBatch(List.of(validEvent("E-K3", 5)))
+                .andExpect(jsonPath("$.accepted").value(1))
+                .andExpect(jsonPath("$.updated").value(1));
+
+        assertThat(eventRepository.findById("E-K3").orElseThrow().getDefectCount()).isEqualTo(5);
+    }
+
+    private ResultActions postBatch(List<EventRequestDTO> events) throws Exception {
+        return mockMvc.perform(post("/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(events)))
+                .andExpect(status().isOk());
+    }
+
+    private double skipped() {
+        return registry.get("events.ingest.lookup.skipped").counter().count();
+    }
+
+    private EventRequestDTO validEvent(String id, int defects) {
+        EventRequestDTO dto = new EventRequestDTO();
+        dto.setEventId(id);
+        dto.setMachineId("M-017");
+        dto.setEventTime(eventTime);
+        dto.setDurationMs(1000);
+        dto.setDefectCount(defects);
+        return dto;
+    }
+}
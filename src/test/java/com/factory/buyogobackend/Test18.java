@@ -0,0 +1,78 @@
+package com.factory.buyogobackend;
+
+import com.factory.buyogobackend.dto.BatchResponse;
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.dto.Rejection;
+import com.factory.buyogobackend.model.Event;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.factory.buyogobackend.service.EventService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//  TEST 18: Parallel preprocessing keeps last-wins, the deduped count and the rejection order of a sequential run
+
+@SpringBootTest(properties = {"events.ingest.parallel.threshold=1", "events.ingest.parallel.threads=4"})
+public class Test18 {
+
+    @Autowired
+    private EventService eventService ;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    private final LocalDateTime eventTime = LocalDateTime.now().minusMinutes(30).withNano(0);
+
+    @BeforeEach
+    void clearDb() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    void parallelPreprocessing_matchesSequentialSemantics() {
+        List<EventRequestDTO> batch = new ArrayList<>();
+        List<String> expectedRejections = new ArrayList<>();
+        Map<String, Integer> lastDefects = new HashMap<>();
+        int expectedDeduped = 0;
+
+        for (int i = 0; i < 500; i++) {
+            EventRequestDTO dto = validEvent("E-P" + (i % 37), (i / 37) % 2);
+            if (i % 11 == 0) {
+                dto.setDurationMs(-1);
+                expectedRejections.add(dto.getEventId());
+            } else {
+                Integer previous = lastDefects.put(dto.getEventId(), dto.getDefectCount());
+                if (previous != null && previous == dto.getDefectCount()) expectedDeduped++;
+            }
+            batch.add(dto);
+        }
+
+        BatchResponse response = eventService.processBatch(batch);
+
+        assertThat(response.getRejections()).extracting(Rejection::getEventId).containsExactlyElementsOf(expectedRejections);
+        assertThat(response.getDeduped()).isEqualTo(expectedDeduped);
+        assertThat(response.getAccepted()).isEqualTo(lastDefects.size());
+        for (Event stored : eventRepository.findAll()) {
+            assertThat(stored.getDefectCount()).isEqualTo(lastDefects.get(stored.getEventId()));
+        }
+    }
+
+    private EventRequestDTO validEvent(String id, int defects) {
+        EventRequestDTO dto = new EventRequestDTO();
+        dto.setEventId(id);
+        dto.setMachineId("M-018");
+        dto.setEventTime(eventTime);
+        dto.setDurationMs(1000);
+        dto.setDefectCount(defects);
+        return dto;
+    }
+}
@@ -0,0 +1,102 @@
+package com.factory.buyogobackend;
+
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//  TEST 19: Retention drops whole expired day partitions with their rollups, recent events stay; an update moves its row between days
+
+@SpringBootTest(properties = {"events.retention.days=30", "events.retention.delete-chunk=2"})
+@AutoConfigureMockMvc
+public class Test19 {
+
+    @Autowired
+    private MockMvc mockMvc ;
+    @Autowired
+    private ObjectMapper objectMapper ;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    private final LocalDateTime old = LocalDateTime.now().minusDays(40).withNano(0);
+    private final LocalDateTime recent = LocalDateTime.now().minusDays(1).withNano(0);
+
+    @BeforeEach
+    void clearDb() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    void retention_dropsExpiredDays() throws Exception {
+        EventRequestDTO expired = validEvent("E-R1", old);
+        postBatch(List.of(expired, validEvent("E-R2", old.plusMinutes(1)), validEvent("E-R3", old.plusHours(3)),
+                validEvent("E-R4", recent)));
+
+        mockMvc.perform(post("/events/retention"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deletedEvents").value(3));
+
+        expectCount(old.minusDays(1), old.plusDays(1), 0);
+        expectCount(recent.minusHours(1), recent.plusHours(1), 1);
+
+        // a dropped day is not written again
+        postBatch(List.of(expired)).andExpect(jsonPath("$.accepted").value(0));
+        expectCount(old.minusDays(1), old.plusDays(1), 0);
+    }
+
+    @Test
+    void updateToAnotherDay_movesTheRowBetweenPartitions() throws Exception {
+        postBatch(List.of(validEvent("E-R5", recent.minusDays(2))));
+        EventRequestDTO moved = validEvent("E-R5", recent);
+        moved.setDefectCount(4);
+        postBatch(List.of(moved)).andExpect(jsonPath("$.updated").value(1));
+
+        expectCount(recent.minusDays(2).minusHours(1), recent.minusDays(2).plusHours(1), 0);
+        expectCount(recent.minusHours(1), recent.plusHours(1), 1);
+        assertEquals(1, eventRepository.count());
+        assertEquals(4, eventRepository.findById("E-R5").orElseThrow().getDefectCount());
+    }
+
+    private ResultActions postBatch(List<EventRequestDTO> events) throws Exception {
+        return mockMvc.perform(post("/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(events)))
+                .andExpect(status().isOk());
+    }
+
+    private void expectCount(LocalDateTime start, LocalDateTime end, long events) throws Exception {
+        mockMvc.perform(get("/stats")
+                        .param("machineId", "M-019")
+                        .param("start", start.toString())
+                        .param("end", end.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.eventsCount").value(events));
+    }
+
+    private EventRequestDTO validEvent(String id, LocalDateTime eventTime) {
+        EventRequestDTO dto = new EventRequestDTO();
+        dto.setEventId(id);
+        dto.setMachineId("M-019");
+        dto.setEventTime(eventTime);
+        dto.setDurationMs(1000);
+        dto.setDefectCount(1);
+        return dto;
+    }
+}
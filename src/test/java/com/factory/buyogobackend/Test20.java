@@ -0,0 +1,179 @@
+package com.factory.buyogobackend;
+
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.model.Machine;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.factory.buyogobackend.repository.MachineRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//  TEST 20: Bulk stats return one row per machine, match /stats and resolve factory / line machines
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class Test20 {
+
+    @Autowired
+    private MockMvc mockMvc ;
+    @Autowired
+    private ObjectMapper objectMapper ;
+
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private MachineRepository machineRepository;
+
+    private final LocalDateTime base = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(6);
+
+    @BeforeEach
+    void clearDb() {
+        eventRepository.deleteAll();
+        machineRepository.deleteAll();
+        machineRepository.saveAll(List.of(
+                machine("M-B1", "F-20", "L-1"),
+                machine("M-B2", "F-20", "L-1"),
+                machine("M-B3", "F-20", "L-2"),
+                machine("M-BX", "F-OTHER", "L-1")));
+    }
+
+    @Test
+    void bulkStats_matchSingleMachineStats() throws Exception {
+        post(List.of(
+                validEvent("E-B1", "M-B1", base.plusMinutes(10), 2),
+                validEvent("E-B2", "M-B1", base.plusMinutes(90), 3),
+                validEvent("E-B3", "M-B2", base.plusMinutes(150), -1),
+                validEvent("E-B4", "M-B3", base.plusMinutes(95), 4)));
+
+        LocalDateTime start = base.plusMinutes(5) ;
+        LocalDateTime end = base.plusMinutes(160) ;
+
+        mockMvc.perform(get("/stats/machines")
+                        .param("machineIds", "M-B2", "M-B1", "M-NONE")
+                        .param("start", start.toString())
+                        .param("end", end.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].machineId").value("M-B2"))
+                .andExpect(jsonPath("$[0].eventsCount").value(1))
+                .andExpect(jsonPath("$[0].defectsCount").value(0))
+                .andExpect(jsonPath("$[1].machineId").value("M-B1"))
+                .andExpect(jsonPath("$[1].eventsCount").value(2))
+                .andExpect(jsonPath("$[1].defectsCount").value(5))
+                .andExpect(jsonPath("$[2].machineId").value("M-NONE"))
+                .andExpect(jsonPath("$[2].eventsCount").value(0));
+
+        String single = mockMvc.perform(get("/stats")
+                        .param("machineId", "M-B1")
+                        .param("start", start.toString())
+                        .param("end", end.toString()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String bulk = mockMvc.perform(get("/stats/machines")
+                        .param("machineIds", "M-B1")
+                        .param("start", start.toString())
+                        .param("end", end.toString()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertEquals("[" + single + "]", bulk);
+    }
+
+    @Test
+    void bulkStats_resolveFactoryAndLine() throws Exception {
+        post(List.of(
+                validEvent("E-B5", "M-B1", base.plusMinutes(30), 1),
+                validEvent("E-B6", "M-B3", base.plusMinutes(30), 7),
+                validEvent("E-B7", "M-BX", base.plusMinutes(30), 9)));
+
+        mockMvc.perform(get("/stats/machines")
+                        .param("factoryId", "F-20")
+                        .param("start", base.toString())
+                        .param("end", base.plusHours(2).toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].machineId").value("M-B1"))
+                .andExpect(jsonPath("$[2].machineId").value("M-B3"))
+                .andExpect(jsonPath("$[2].defectsCount").value(7));
+
+        mockMvc.perform(get("/stats/machines")
+                        .param("factoryId", "F-20")
+                        .param("lineId", "L-1")
+                        .param("start", base.toString())
+                        .param("end", base.plusHours(2).toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].defectsCount").value(1))
+                .andExpect(jsonPath("$[1].machineId").value("M-B2"));
+
+        mockMvc.perform(get("/stats/machines")
+                        .param("lineId", "L-1")
+                        .param("start", base.toString())
+                        .param("end", base.plusHours(2).toString()))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void bulkStats_streamAsNdjson() throws Exception {
+        post(List.of(
+                validEvent("E-B8", "M-B1", base.plusMinutes(30), 1),
+                validEvent("E-B9", "M-B2", base.plusMinutes(30), 2)));
+
+        MvcResult result = mockMvc.perform(get("/stats/machines")
+                        .accept("application/x-ndjson")
+                        .param("machineIds", "M-B1,M-B2")
+                        .param("start", base.toString())
+                        .param("end", base.plusHours(1).toString()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.strip().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(2, objectMapper.readTree(lines[1]).get("defectsCount").asLong());
+    }
+
+    private void post(List<EventRequestDTO> events) throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(events)))
+                .andExpect(status().isOk());
+    }
+
+    private Machine machine(String machineId, String factoryId, String lineId) {
+        Machine machine = new Machine();
+        machine.setMachineId(machineId);
+        machine.setFactoryId(factoryId);
+        machine.setLineId(lineId);
+        return machine;
+    }
+
+    private EventRequestDTO validEvent(String id, String machineId, LocalDateTime eventTime, int defects) {
+        EventRequestDTO dto = new EventRequestDTO();
+        dto.setEventId(id);
+        dto.setMachineId(machineId);
+        dto.setEventTime(eventTime);
+        dto.setDurationMs(1000);
+        dto.setDefectCount(defects);
+        return dto;
+    }
+}
@@ -0,0 +1,182 @@
+package com.factory.buyogobackend;
+
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.model.Machine;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.factory.buyogobackend.repository.MachineRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//  TEST 21: Stats series slices a window into per-interval counts, from rollups or raw rows
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class Test21 {
+
+    @Autowired
+    private MockMvc mockMvc ;
+    @Autowired
+    private ObjectMapper objectMapper ;
+
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private MachineRepository machineRepository;
+
+    private final LocalDateTime base = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(6);
+
+    @BeforeEach
+    void clearDb() {
+        eventRepository.deleteAll();
+        machineRepository.deleteAll();
+        machineRepository.saveAll(List.of(
+                machine("M-S1", "F-21", "L-1"),
+                machine("M-S2", "F-21", "L-1"),
+                machine("M-S3", "F-21", "L-2")));
+    }
+
+    @Test
+    void hourlySeries_fromRollupsAndTrailingHour() throws Exception {
+        post(List.of(
+                validEvent("E-S1", "M-S1", base.plusMinutes(10), 2),
+                validEvent("E-S2", "M-S1", base.plusMinutes(50), -1),
+                validEvent("E-S3", "M-S1", base.plusMinutes(130), 4),
+                validEvent("E-S4", "M-S1", base.plusMinutes(200), 6),
+                validEvent("E-S5", "M-S2", base.plusMinutes(20), 9)));
+
+        // the last slice is the partial hour [base+3h, base+3h20m), answered from raw rows
+        mockMvc.perform(get("/stats/series")
+                        .param("machineId", "M-S1")
+                        .param("start", base.toString())
+                        .param("end", base.plusMinutes(200).toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(4))
+                .andExpect(jsonPath("$[0].eventsCount").value(2))
+                .andExpect(jsonPath("$[0].defectsCount").value(2))
+                .andExpect(jsonPath("$[0].avgDefectRate").value(2.0))
+                .andExpect(jsonPath("$[1].eventsCount").value(0))
+                .andExpect(jsonPath("$[2].eventsCount").value(1))
+                .andExpect(jsonPath("$[2].defectsCount").value(4))
+                .andExpect(jsonPath("$[3].eventsCount").value(0))
+                .andExpect(jsonPath("$[3].end").value(base.plusMinutes(200).toString() + ":00"));
+
+        mockMvc.perform(get("/stats/series")
+                        .param("machineId", "M-S1")
+                        .param("start", base.toString())
+                        .param("end", base.plusHours(4).toString())
+                        .param("intervalMinutes", "120"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].eventsCount").value(2))
+                .andExpect(jsonPath("$[1].eventsCount").value(2))
+                .andExpect(jsonPath("$[1].defectsCount").value(10));
+    }
+
+    @Test
+    void unalignedSeries_fromRawRows_followUpdates() throws Exception {
+        post(List.of(
+                validEvent("E-S6", "M-S1", base.plusMinutes(14), 1),
+                validEvent("E-S7", "M-S1", base.plusMinutes(15), 3)));
+
+        Thread.sleep(10);
+        post(List.of(validEvent("E-S6", "M-S1", base.plusMinutes(44), 5)));
+
+        mockMvc.perform(get("/stats/series")
+                        .param("machineId", "M-S1")
+                        .param("start", base.plusMinutes(5).toString())
+                        .param("end", base.plusMinutes(65).toString())
+                        .param("intervalMinutes", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(6))
+                .andExpect(jsonPath("$[0].eventsCount").value(0))
+                .andExpect(jsonPath("$[1].eventsCount").value(1))
+                .andExpect(jsonPath("$[1].defectsCount").value(3))
+                .andExpect(jsonPath("$[3].eventsCount").value(1))
+                .andExpect(jsonPath("$[3].defectsCount").value(5));
+    }
+
+    @Test
+    void lineSeries_sumsMachinesOfTheLine() throws Exception {
+        post(List.of(
+                validEvent("E-S8", "M-S1", base.plusMinutes(10), 1),
+                validEvent("E-S9", "M-S2", base.plusMinutes(20), 2),
+                validEvent("E-S10", "M-S3", base.plusMinutes(30), 40)));
+
+        mockMvc.perform(get("/stats/series")
+                        .param("factoryId", "F-21")
+                        .param("lineId", "L-1")
+                        .param("start", base.toString())
+                        .param("end", base.plusHours(2).toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].eventsCount").value(2))
+                .andExpect(jsonPath("$[0].defectsCount").value(3));
+
+        mockMvc.perform(get("/stats/series")
+                        .param("machineId", "M-S1")
+                        .param("start", base.toString())
+                        .param("end", base.plusHours(2).toString())
+                        .param("intervalMinutes", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void subMillisecondBounds_areWidenedToWholeMilliseconds() throws Exception {
+        post(List.of(
+                validEvent("E-S20", "M-S1", base.plusMinutes(30), 1),
+                validEvent("E-S21", "M-S1", base.plusHours(1).plusNanos(200_000), 3)));
+
+        // start base + 0.7 ms, end base + 1h + 0.5 ms: the end lies past the last whole slice by less than a millisecond
+        mockMvc.perform(get("/stats/series")
+                        .param("machineId", "M-S1")
+                        .param("start", base.plusNanos(700_000).toString())
+                        .param("end", base.plusHours(1).plusNanos(500_000).toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].start").value(base.toString() + ":00"))
+                .andExpect(jsonPath("$[0].eventsCount").value(1))
+                .andExpect(jsonPath("$[1].eventsCount").value(1))
+                .andExpect(jsonPath("$[1].defectsCount").value(3))
+                .andExpect(jsonPath("$[1].end").value(base.plusHours(1).toString() + ":00.001"));
+    }
+
+    private void post(List<EventRequestDTO> events) throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(events)))
+                .andExpect(status().isOk());
+    }
+
+    private Machine machine(String machineId, String factoryId, String lineId) {
+        Machine machine = new Machine();
+        machine.setMachineId(machineId);
+        machine.setFactoryId(factoryId);
+        machine.setLineId(lineId);
+        return machine;
+    }
+
+    private EventRequestDTO validEvent(String id, String machineId, LocalDateTime eventTime, int defects) {
+        EventRequestDTO dto = new EventRequestDTO();
+        dto.setEventId(id);
+        dto.setMachineId(machineId);
+        dto.setEventTime(eventTime);
+        dto.setDurationMs(1000);
+        dto.setDefectCount(defects);
+        return dto;
+    }
+}
@@ -0,0 +1,104 @@
+package com.factory.buyogobackend;
+
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//  TEST 22: Live stats stream pushes the current stats, then updates and status transitions after each batch
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class Test22 {
+
+    @Autowired
+    private MockMvc mockMvc ;
+    @Autowired
+    private ObjectMapper objectMapper ;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @BeforeEach
+    void clearDb() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    void liveStream_pushesUpdatesAndTransitions() throws Exception {
+        MvcResult result = mockMvc.perform(get("/stats/live")
+                        .accept(MediaType.TEXT_EVENT_STREAM)
+                        .param("machineIds", "M-V1,M-V2")
+                        .param("windowMinutes", "60"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MockHttpServletResponse response = result.getResponse();
+
+        awaitContent(response, "\"machineId\":\"M-V2\"");
+        assertFalse(response.getContentAsString().contains("event:status"));
+
+        LocalDateTime now = LocalDateTime.now();
+        post(List.of(validEvent("E-V1", "M-V1", now.minusMinutes(5), 1)));
+        awaitContent(response, "\"eventsCount\":1");
+        assertFalse(response.getContentAsString().contains("event:status"));
+
+        // 6 defects in a 60 minute window crosses the 2 per hour threshold
+        post(List.of(validEvent("E-V2", "M-V1", now.minusMinutes(4), 5),
+                validEvent("E-V3", "M-X", now.minusMinutes(4), 5)));
+        awaitContent(response, "event:status");
+        String content = response.getContentAsString();
+        assertTrue(content.contains("\"status\":\"Warning\""));
+        assertFalse(content.contains("M-X"));
+    }
+
+    @Test
+    void liveStream_rejectsEmptySubscription() throws Exception {
+        mockMvc.perform(get("/stats/live")
+                        .accept(MediaType.TEXT_EVENT_STREAM)
+                        .param("windowMinutes", "60"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private void awaitContent(MockHttpServletResponse response, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000 ;
+        while( !response.getContentAsString().contains(expected) && System.currentTimeMillis() < deadline ){
+            Thread.sleep(20);
+        }
+        assertTrue(response.getContentAsString().contains(expected), response.getContentAsString());
+    }
+
+    private void post(List<EventRequestDTO> events) throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(events)))
+                .andExpect(status().isOk());
+    }
+
+    private EventRequestDTO validEvent(String id, String machineId, LocalDateTime eventTime, int defects) {
+        EventRequestDTO dto = new EventRequestDTO();
+        dto.setEventId(id);
+        dto.setMachineId(machineId);
+        dto.setEventTime(eventTime);
+        dto.setDurationMs(1000);
+        dto.setDefectCount(defects);
+        return dto;
+    }
+}
@@ -0,0 +1,150 @@
+package com.factory.buyogobackend;
+
+import com.factory.buyogobackend.codec.BinaryEventDecoder;
+import com.factory.buyogobackend.codec.BinaryEventEncoder;
+import com.factory.buyogobackend.codec.BinaryEventFormat;
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//  TEST 23: Binary batch bodies decode to the same events and produce the same BatchResponse as JSON
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class Test23 {
+
+    @Autowired
+    private MockMvc mockMvc ;
+    @Autowired
+    private ObjectMapper objectMapper ;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    private final LocalDateTime base = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS).minusHours(1);
+
+    @BeforeEach
+    void clearDb() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    void binaryBatch_matchesJsonBatch() throws Exception {
+        List<EventRequestDTO> events = new ArrayList<>();
+        events.add(validEvent("E-BIN-1", "M-1", base, 2));
+        events.add(validEvent("E-BIN-2", "M-2", base.plusSeconds(1), -1));
+        events.add(validEvent("E-BIN-1", "M-1", base, 2));
+        events.add(validEvent("E-BIN-3", "M-1", base.plusSeconds(2), 5));
+        events.add(validEvent("E-BIN-3", "M-1", base.plusSeconds(3), 6));
+        events.add(validEvent("E-BIN-4", null, base, 1));
+        events.add(validEvent("E-BIN-5", "M-2", null, 1));
+        events.add(validEvent("E-BIN-6", "M-2", base.plusDays(1), 1));
+        events.add(validEvent(null, "M-2", base, 1));
+        EventRequestDTO negative = validEvent("E-BIN-7", "M-3", base, 1);
+        negative.setDurationMs(-5);
+        events.add(negative);
+
+        String json = mockMvc.perform(post("/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(events)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        eventRepository.deleteAll();
+
+        String binary = mockMvc.perform(post("/events/batch")
+                        .contentType(BinaryEventFormat.MEDIA_TYPE)
+                        .content(BinaryEventEncoder.encode(events)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals(json, binary);
+        assertEquals(base.plusSeconds(3), eventRepository.findById("E-BIN-3").orElseThrow().getEventTime());
+    }
+
+    @Test
+    void binaryBody_roundTripsAndRejectsGarbage() throws Exception {
+        String longId = "E-" + "é".repeat(9000);
+        List<EventRequestDTO> events = List.of(
+                validEvent(longId, "M-ü", base, Integer.MIN_VALUE),
+                validEvent("E-2", "M-ü", null, -1));
+
+        BinaryEventDecoder decoder = new BinaryEventDecoder(new ByteArrayInputStream(BinaryEventEncoder.encode(events)));
+        EventRequestDTO first = decoder.next();
+        assertEquals(longId, first.getEventId());
+        assertEquals("M-ü", first.getMachineId());
+        assertEquals(base, first.getEventTime());
+        assertEquals(Integer.MIN_VALUE, first.getDefectCount());
+        EventRequestDTO second = decoder.next();
+        assertNull(second.getEventTime());
+        assertEquals(-1, second.getDefectCount());
+        assertFalse(decoder.hasNext());
+
+        byte[] body = BinaryEventEncoder.encode(List.of(validEvent("E-3", "M-1", base, 1)));
+        mockMvc.perform(post("/events/batch")
+                        .contentType(BinaryEventFormat.MEDIA_TYPE)
+                        .content(Arrays.copyOf(body, body.length - 1)))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/events/batch")
+                        .contentType(BinaryEventFormat.MEDIA_TYPE)
+                        .content("[{}]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void intFieldOutOfRange_isAFormatError() throws Exception {
+        // machine "M", then an event without time whose defect count is 2^31
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(new byte[]{ 'M', 'E', 'V', 0x01, 0x01, 1, 'M', 0x03, 2, 'E', 1 });
+        writeVarLong(body, 1000L << 1);
+        writeVarLong(body, 1L << 32);
+
+        BinaryEventDecoder decoder = new BinaryEventDecoder(new ByteArrayInputStream(body.toByteArray()));
+        assertThrows(BinaryEventFormat.FormatException.class, decoder::next);
+        mockMvc.perform(post("/events/batch")
+                        .contentType(BinaryEventFormat.MEDIA_TYPE)
+                        .content(body.toByteArray()))
+                .andExpect(status().isBadRequest());
+        assertEquals(0, eventRepository.count());
+    }
+
+    private void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private EventRequestDTO validEvent(String id, String machineId, LocalDateTime eventTime, int defects) {
+        EventRequestDTO dto = new EventRequestDTO();
+        dto.setEventId(id);
+        dto.setMachineId(machineId);
+        dto.setEventTime(eventTime);
+        dto.setDurationMs(1000);
+        dto.setDefectCount(defects);
+        return dto;
+    }
+}
@@ -0,0 +1,81 @@
+package com.factory.buyogobackend;
+
+import com.factory.buyogobackend.config.DatabaseSettingsReport;
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.factory.buyogobackend.service.EventService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//  TEST 24: The prod profile runs on a file-backed H2 with the configured store, pool and batch settings
+
+// the context owns the temp directory's database, close it before the directory is removed
+@SpringBootTest
+@ActiveProfiles("prod")
+@DirtiesContext
+public class Test24 {
+
+    @TempDir
+    static Path dbDir ;
+
+    @DynamicPropertySource
+    static void dbPath(DynamicPropertyRegistry registry) {
+        registry.add("events.db.path", () -> dbDir.resolve("events").toAbsolutePath().toString());
+    }
+
+    @Autowired
+    private EventService eventService;
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private DatabaseSettingsReport databaseSettingsReport;
+    @Autowired
+    private DataSource dataSource;
+
+    @BeforeEach
+    void clearDb() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    void prodProfile_usesTunedFileDatabase() {
+        Map<String, String> settings = databaseSettingsReport.settings();
+        assertEquals("true", settings.get("MV_STORE"));
+        assertEquals("262144", settings.get("CACHE_SIZE"));
+        assertEquals("16384", settings.get("info.PAGE_SIZE"));
+        assertEquals(16, ((HikariDataSource) dataSource).getMaximumPoolSize());
+
+        eventService.processBatch(List.of(validEvent("E-P1", "M-P", LocalDateTime.now().minusMinutes(5), 1)));
+
+        assertEquals(1, eventRepository.count());
+        assertTrue(Files.exists(dbDir.resolve("events.mv.db")));
+    }
+
+    private EventRequestDTO validEvent(String id, String machineId, LocalDateTime eventTime, int defects) {
+        EventRequestDTO dto = new EventRequestDTO();
+        dto.setEventId(id);
+        dto.setMachineId(machineId);
+        dto.setEventTime(eventTime);
+        dto.setDurationMs(1000);
+        dto.setDefectCount(defects);
+        return dto;
+    }
+}
@@ -0,0 +1,109 @@
+package com.factory.buyogobackend;
+
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.dto.QueryStatsResponse;
+import com.factory.buyogobackend.dto.StatsSeriesPoint;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.factory.buyogobackend.repository.hot.HotEventTier;
+import com.factory.buyogobackend.repository.projection.StatsProjection;
+import com.factory.buyogobackend.service.EventService;
+import com.factory.buyogobackend.service.RetentionService;
+import com.factory.buyogobackend.service.StatsSeriesService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//  TEST 25: Hot tier answers recent windows exactly like the events table, across updates and retention
+
+@SpringBootTest
+public class Test25 {
+
+    @Autowired
+    private EventService eventService;
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private HotEventTier hotEventTier;
+    @Autowired
+    private RetentionService retentionService;
+    @Autowired
+    private StatsSeriesService statsSeriesService;
+
+    private final LocalDateTime now = LocalDateTime.now();
+
+    @BeforeEach
+    void clearDb() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    void hotTier_matchesDatabase() throws Exception {
+        Random random = new Random(25);
+        List<EventRequestDTO> batch = new ArrayList<>();
+        for(int i = 0; i < 2000; i++){
+            LocalDateTime time = now.minusSeconds(random.nextInt(70 * 3600)).minusNanos(random.nextInt(1_000_000));
+            batch.add(validEvent("E-H" + i, "M-H" + random.nextInt(5), time, random.nextInt(6) - 1));
+        }
+        eventService.processBatch(batch);
+
+        // updates move events to other times / machines, the superseded versions must leave the tier
+        Thread.sleep(10);
+        List<EventRequestDTO> updates = new ArrayList<>();
+        for(int i = 0; i < 2000; i += 7){
+            updates.add(validEvent("E-H" + i, "M-H" + random.nextInt(5), now.minusMinutes(random.nextInt(600)), random.nextInt(4)));
+        }
+        eventService.processBatch(updates);
+
+        assertEquals(2000, hotEventTier.size());
+        for(int q = 0; q < 50; q++){
+            LocalDateTime start = now.minusSeconds(random.nextInt(70 * 3600));
+            LocalDateTime end = start.plusSeconds(1 + random.nextInt(24 * 3600));
+            String machineId = "M-H" + random.nextInt(5);
+            assertTrue(hotEventTier.covers(start));
+
+            StatsProjection db = eventRepository.fetchStats(machineId, start, end);
+            QueryStatsResponse stats = eventService.getStats(machineId, start, end);
+            assertEquals(db.getEventsCount(), stats.getEventsCount(), "events " + machineId + " " + start + " " + end);
+            assertEquals(db.getDefectsCount(), stats.getDefectsCount(), "defects " + machineId + " " + start + " " + end);
+
+            List<StatsSeriesPoint> series = statsSeriesService.series(List.of(machineId), start, end, Duration.ofMinutes(7)) ;
+            assertEquals(db.getEventsCount(), series.stream().mapToLong(StatsSeriesPoint::getEventsCount).sum());
+            assertEquals(db.getDefectsCount(), series.stream().mapToLong(StatsSeriesPoint::getDefectsCount).sum());
+        }
+
+        LocalDateTime old = now.minusHours(100);
+        assertFalse(hotEventTier.covers(old));
+        assertEquals(eventRepository.fetchStats("M-H1", old, now.plusHours(1)).getEventsCount(),
+                eventService.getStats("M-H1", old, now.plusHours(1)).getEventsCount());
+
+        // retention drops the same events from the tier as from the table
+        retentionService.purgeBefore(now.minusHours(24).truncatedTo(ChronoUnit.DAYS));
+        LocalDateTime from = now.minusHours(71);
+        for(int m = 0; m < 5; m++){
+            assertEquals(eventRepository.fetchStats("M-H" + m, from, now.plusHours(1)).getEventsCount(),
+                    hotEventTier.stats("M-H" + m, from, now.plusHours(1)).getEventsCount());
+        }
+    }
+
+    private EventRequestDTO validEvent(String id, String machineId, LocalDateTime eventTime, int defects) {
+        EventRequestDTO dto = new EventRequestDTO();
+        dto.setEventId(id);
+        dto.setMachineId(machineId);
+        dto.setEventTime(eventTime);
+        dto.setDurationMs(1000);
+        dto.setDefectCount(defects);
+        return dto;
+    }
+}
@@ -0,0 +1,186 @@
+package com.factory.buyogobackend;
+
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.model.Machine;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.factory.buyogobackend.repository.MachineRepository;
+import com.factory.buyogobackend.repository.keys.KeyDictionary;
+import com.factory.buyogobackend.repository.keys.KeyKind;
+import com.factory.buyogobackend.service.EventService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//  TEST 26: Machine / factory / line ids are stored as interned integer keys and translated back at the API
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class Test26 {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private MachineRepository machineRepository;
+    @Autowired
+    private KeyDictionary keyDictionary;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EventService eventService;
+
+    // an old, hour aligned window, so the rollups and raw scans answer instead of the hot tier
+    private final LocalDateTime start = LocalDateTime.now().minusDays(5).truncatedTo(ChronoUnit.HOURS);
+    private final LocalDateTime end = start.plusHours(3);
+
+    @BeforeEach
+    void clearDb() {
+        eventRepository.deleteAll();
+        machineRepository.deleteAll();
+    }
+
+    @Test
+    void ids_areStoredAsKeys_andTranslatedBack() throws Exception {
+        machineRepository.saveAll(List.of(machine("M-K1", "F-K", "L-K1"), machine("M-K2", "F-K", "L-K2")));
+        postBatch(List.of(
+                validEvent("E-K1", "M-K1", start.plusMinutes(10), 2),
+                validEvent("E-K2", "M-K1", start.plusMinutes(70), 3),
+                validEvent("E-K3", "M-K2", start.plusMinutes(130), 4)));
+
+        int machineKey = keyDictionary.keyOf(KeyKind.MACHINE, "M-K1");
+        assertThat(machineKey).isPositive();
+        assertThat(keyDictionary.valueOf(KeyKind.MACHINE, machineKey)).isEqualTo("M-K1");
+        assertThat(jdbcTemplate.queryForObject("SELECT machine_key FROM events WHERE event_id = 'E-K1'", Integer.class))
+                .isEqualTo(machineKey);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME = 'EVENTS' AND COLUMN_NAME = 'MACHINE_ID'", Integer.class))
+                .isZero();
+
+        // the machine catalogue stores factory and line keys too
+        assertThat(jdbcTemplate.queryForObject("SELECT line_key FROM machines WHERE machine_id = 'M-K2'", Integer.class))
+                .isEqualTo(keyDictionary.keyOf(KeyKind.LINE, "L-K2"));
+        assertThat(jdbcTemplate.queryForObject("SELECT factory_key FROM machines WHERE machine_id = 'M-K2'", Integer.class))
+                .isEqualTo(keyDictionary.keyOf(KeyKind.FACTORY, "F-K"));
+
+        // JPA reads translate the key back
+        assertThat(eventRepository.findById("E-K3").orElseThrow().getMachineId()).isEqualTo("M-K2");
+        assertThat(machineRepository.findById("M-K2").orElseThrow().getLineId()).isEqualTo("L-K2");
+
+        mockMvc.perform(get("/stats")
+                        .param("machineId", "M-K1")
+                        .param("start", start.toString())
+                        .param("end", end.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.eventsCount").value(2))
+                .andExpect(jsonPath("$.defectsCount").value(5));
+
+        mockMvc.perform(get("/stats/machines")
+                        .param("factoryId", "F-K")
+                        .param("start", start.toString())
+                        .param("end", end.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[1].machineId").value("M-K2"))
+                .andExpect(jsonPath("$[1].eventsCount").value(1));
+
+        mockMvc.perform(get("/stats/top-defect-lines")
+                        .param("factoryId", "F-K")
+                        .param("from", start.toString())
+                        .param("to", end.toString())
+                        .param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].lineId").value("L-K1"))
+                .andExpect(jsonPath("$[0].totalDefects").value(5))
+                .andExpect(jsonPath("$[1].lineId").value("L-K2"));
+    }
+
+    @Test
+    void unknownMachine_matchesNothing_andGetsNoKey() throws Exception {
+        int keys = keyDictionary.size(KeyKind.MACHINE);
+
+        mockMvc.perform(get("/stats")
+                        .param("machineId", "M-NEVER-SEEN")
+                        .param("start", start.toString())
+                        .param("end", end.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.eventsCount").value(0));
+
+        assertThat(keyDictionary.keyOf(KeyKind.MACHINE, "M-NEVER-SEEN")).isEqualTo(KeyDictionary.NO_KEY);
+        assertThat(keyDictionary.size(KeyKind.MACHINE)).isEqualTo(keys);
+    }
+
+    @Test
+    void concurrentFirstSightBatches_shareOneKeyPerId() throws Exception {
+        // more writers than pooled connections, every batch brings new ids, some shared with other batches
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> batches = new ArrayList<>();
+            for(int t = 0; t < 16; t++){
+                int batchNo = t;
+                batches.add(pool.submit(() -> eventService.processBatch(List.of(
+                        validEvent("E-KC-" + batchNo + "-1", "M-KC-OWN-" + batchNo, start, 1),
+                        validEvent("E-KC-" + batchNo + "-2", "M-KC-SHARED-" + (batchNo % 4), start, 1)))));
+            }
+            for(Future<?> batch : batches) batch.get();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        HashSet<Integer> keys = new HashSet<>();
+        for(int t = 0; t < 16; t++) keys.add(keyDictionary.keyOf(KeyKind.MACHINE, "M-KC-OWN-" + t));
+        for(int s = 0; s < 4; s++) keys.add(keyDictionary.keyOf(KeyKind.MACHINE, "M-KC-SHARED-" + s));
+        assertThat(keys).hasSize(20).doesNotContain(KeyDictionary.NO_KEY);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM id_keys WHERE kind = 'MACHINE' AND external_id LIKE 'M-KC-%'", Integer.class))
+                .isEqualTo(20);
+        assertThat(eventRepository.count()).isEqualTo(32);
+    }
+
+    private void postBatch(List<EventRequestDTO> events) throws Exception {
+        mockMvc.perform(post("/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(events)))
+                .andExpect(status().isOk());
+    }
+
+    private Machine machine(String machineId, String factoryId, String lineId) {
+        Machine m = new Machine();
+        m.setMachineId(machineId);
+        m.setFactoryId(factoryId);
+        m.setLineId(lineId);
+        return m;
+    }
+
+    private EventRequestDTO validEvent(String id, String machineId, LocalDateTime eventTime, int defects) {
+        EventRequestDTO dto = new EventRequestDTO();
+        dto.setEventId(id);
+        dto.setMachineId(machineId);
+        dto.setEventTime(eventTime);
+        dto.setDurationMs(1000);
+        dto.setDefectCount(defects);
+        return dto;
+    }
+}
@@ -0,0 +1,118 @@
+package com.factory.buyogobackend;
+
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.dto.StatsSeriesPoint;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.factory.buyogobackend.repository.projection.MachineStatsProjection;
+import com.factory.buyogobackend.service.EventService;
+import com.factory.buyogobackend.service.StatsRollupService;
+import com.factory.buyogobackend.service.StatsSeriesService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//  TEST 27: Raw scans split into parallel (machine, time slice) parts give the same totals as a serial count
+
+@SpringBootTest(properties = {
+        "events.hot-tier.hours=0",
+        "events.stats-cache.max-entries=0",
+        "events.query.fan-out.threads=4",
+        "events.query.fan-out.min-parts=1",
+        "events.query.fan-out.slice-hours=5"
+})
+public class Test27 {
+
+    @Autowired
+    private EventService eventService;
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private StatsRollupService statsRollupService;
+    @Autowired
+    private StatsSeriesService statsSeriesService;
+
+    private final LocalDateTime origin = LocalDateTime.now().minusDays(10).truncatedTo(ChronoUnit.SECONDS);
+
+    @BeforeEach
+    void clearDb() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    void fanOut_matchesSerialCount() {
+        Random random = new Random(27);
+        List<EventRequestDTO> batch = new ArrayList<>();
+        for(int i = 0; i < 3000; i++){
+            LocalDateTime time = origin.plusSeconds(random.nextInt(8 * 24 * 3600));
+            batch.add(validEvent("E-F" + i, "M-F" + random.nextInt(12), time, random.nextInt(6) - 1));
+        }
+        eventService.processBatch(batch);
+
+        List<String> machines = new ArrayList<>();
+        for(int m = 0; m < 13; m++) machines.add("M-F" + m) ;    // M-F12 was never stored
+
+        for(int q = 0; q < 20; q++){
+            LocalDateTime start = origin.plusSeconds(random.nextInt(4 * 24 * 3600));
+            LocalDateTime end = start.plusSeconds(1 + random.nextInt(4 * 24 * 3600));
+
+            Map<String, long[]> expected = new HashMap<>();
+            for(EventRequestDTO e : batch){
+                if( e.getEventTime().isBefore(start) || !e.getEventTime().isBefore(end) ) continue ;
+                long[] totals = expected.computeIfAbsent(e.getMachineId(), k -> new long[2]);
+                totals[0]++ ;
+                totals[1] += Math.max(0, e.getDefectCount()) ;
+            }
+
+            // raw scan of the whole window and the rollup split answer alike
+            List<MachineStatsProjection> raw = eventRepository.fetchStatsByMachine(machines, start, end);
+            assertEquals(expected.size(), raw.size());
+            for(MachineStatsProjection row : raw){
+                assertEquals(expected.get(row.getMachineId())[0], row.getEventsCount(), "events " + row.getMachineId());
+                assertEquals(expected.get(row.getMachineId())[1], row.getDefectsCount(), "defects " + row.getMachineId());
+            }
+            statsRollupService.fetchStatsByMachine(machines, start, end).forEach((machineId, totals) -> {
+                assertEquals(expected.get(machineId)[0], totals.getEventsCount());
+                assertEquals(expected.get(machineId)[1], totals.getDefectsCount());
+            });
+
+            // slices cut across the part boundaries, unaligned and hour aligned
+            for(LocalDateTime from : List.of(start, start.truncatedTo(ChronoUnit.HOURS))){
+                LocalDateTime to = from.plus(Duration.between(start, end));
+                List<StatsSeriesPoint> series = statsSeriesService.series(machines, from, to, Duration.ofMinutes(97));
+                for(StatsSeriesPoint point : series){
+                    assertEquals(count(batch, point.getStart(), point.getEnd(), false), point.getEventsCount(), "slice " + point.getStart());
+                    assertEquals(count(batch, point.getStart(), point.getEnd(), true), point.getDefectsCount(), "slice " + point.getStart());
+                }
+            }
+        }
+    }
+
+    private long count(List<EventRequestDTO> batch, LocalDateTime start, LocalDateTime end, boolean defects) {
+        return batch.stream()
+                .filter(e -> !e.getEventTime().isBefore(start) && e.getEventTime().isBefore(end))
+                .mapToLong(e -> defects ? Math.max(0, e.getDefectCount()) : 1)
+                .sum();
+    }
+
+    private EventRequestDTO validEvent(String id, String machineId, LocalDateTime eventTime, int defects) {
+        EventRequestDTO dto = new EventRequestDTO();
+        dto.setEventId(id);
+        dto.setMachineId(machineId);
+        dto.setEventTime(eventTime);
+        dto.setDurationMs(1000);
+        dto.setDefectCount(defects);
+        return dto;
+    }
+}
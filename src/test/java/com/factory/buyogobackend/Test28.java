@@ -0,0 +1,135 @@
+package com.factory.buyogobackend;
+
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//  TEST 28: A replayed batch gets the stored BatchResponse back without being processed again
+
+@SpringBootTest(properties = "events.ingest.replay.digest=true")
+@AutoConfigureMockMvc
+public class Test28 {
+
+    @Autowired
+    private MockMvc mockMvc ;
+    @Autowired
+    private ObjectMapper objectMapper ;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    private final LocalDateTime base = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS).minusHours(1);
+
+    @BeforeEach
+    void clearDb() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    void idempotencyKey_replaysStoredResponse() throws Exception {
+        List<EventRequestDTO> events = List.of(
+                validEvent("E-RK-1", "M-1", base, 2),
+                validEvent("E-RK-2", "M-1", base.plusSeconds(1), 1),
+                validEvent("E-RK-2", "M-1", base.plusSeconds(1), 1),
+                validEvent(null, "M-1", base, 1));
+
+        MockHttpServletResponse first = postJson(events, "batch-1");
+        assertEquals(200, first.getStatus());
+        assertNull(first.getHeader("Idempotent-Replayed"));
+        assertEquals(2, eventRepository.count());
+
+        // rows gone: a processed retry would accept them again, the replay only repeats the answer
+        eventRepository.deleteAll();
+        MockHttpServletResponse retry = postJson(events, "batch-1");
+        assertEquals(200, retry.getStatus());
+        assertEquals("true", retry.getHeader("Idempotent-Replayed"));
+        assertEquals(first.getContentAsString(), retry.getContentAsString());
+        assertEquals(0, eventRepository.count());
+
+        // same key, other events
+        assertEquals(422, postJson(List.of(validEvent("E-RK-3", "M-1", base, 0)), "batch-1").getStatus());
+
+        // a new key is a new batch
+        MockHttpServletResponse other = postJson(events, "batch-2");
+        assertNull(other.getHeader("Idempotent-Replayed"));
+        assertEquals(2, eventRepository.count());
+    }
+
+    @Test
+    void batchDigest_replaysExactRetryOnly() throws Exception {
+        List<EventRequestDTO> events = List.of(
+                validEvent("E-RD-1", "M-2", base, 2),
+                validEvent("E-RD-2", "M-2", base.plusSeconds(1), 3));
+
+        MockHttpServletResponse first = postJson(events, null);
+        eventRepository.deleteAll();
+        MockHttpServletResponse retry = postJson(events, null);
+        assertEquals("true", retry.getHeader("Idempotent-Replayed"));
+        assertEquals(first.getContentAsString(), retry.getContentAsString());
+        assertEquals(0, eventRepository.count());
+
+        // any change to the events, their order included, is processed
+        EventRequestDTO changed = validEvent("E-RD-2", "M-2", base.plusSeconds(1), 4);
+        assertNull(postJson(List.of(events.get(0), changed), null).getHeader("Idempotent-Replayed"));
+        assertNull(postJson(List.of(events.get(1), events.get(0)), null).getHeader("Idempotent-Replayed"));
+        assertEquals(2, eventRepository.count());
+    }
+
+    @Test
+    void streamedBody_replaysOnKey() throws Exception {
+        String ndjson = objectMapper.writeValueAsString(validEvent("E-RS-1", "M-3", base, 1)) + "\n"
+                + objectMapper.writeValueAsString(validEvent("E-RS-2", "M-3", base, 1)) + "\n";
+
+        String first = mockMvc.perform(post("/events/batch")
+                        .contentType("application/x-ndjson")
+                        .header("Idempotency-Key", "stream-1")
+                        .content(ndjson))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        eventRepository.deleteAll();
+        MockHttpServletResponse retry = mockMvc.perform(post("/events/batch")
+                        .contentType("application/x-ndjson")
+                        .header("Idempotency-Key", "stream-1")
+                        .content(ndjson))
+                .andReturn().getResponse();
+        assertEquals("true", retry.getHeader("Idempotent-Replayed"));
+        assertEquals(first, retry.getContentAsString());
+        assertEquals(0, eventRepository.count());
+    }
+
+    private MockHttpServletResponse postJson(List<EventRequestDTO> events, String idempotencyKey) throws Exception {
+        var request = post("/events/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(events));
+        if( idempotencyKey != null ) request.header("Idempotency-Key", idempotencyKey);
+        return mockMvc.perform(request).andReturn().getResponse();
+    }
+
+    private EventRequestDTO validEvent(String id, String machineId, LocalDateTime eventTime, int defects) {
+        EventRequestDTO dto = new EventRequestDTO();
+        dto.setEventId(id);
+        dto.setMachineId(machineId);
+        dto.setEventTime(eventTime);
+        dto.setDurationMs(1000);
+        dto.setDefectCount(defects);
+        return dto;
+    }
+}
@@ -0,0 +1,109 @@
+package com.factory.buyogobackend;
+
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.dto.LatenessResponse;
+import com.factory.buyogobackend.dto.QueryStatsResponse;
+import com.factory.buyogobackend.dto.WatermarkResponse;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.factory.buyogobackend.service.EventService;
+import com.factory.buyogobackend.service.EventWatermarks;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//  TEST 29: Late and out-of-order events move watermarks, lateness counts and cached stats correctly
+
+@SpringBootTest
+public class Test29 {
+
+    @Autowired
+    private EventService eventService;
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private EventWatermarks eventWatermarks;
+
+    // hour aligned and outside the hot tier, so stats come from the rollups and the cache
+    private final LocalDateTime base = LocalDateTime.now().minusDays(5).truncatedTo(ChronoUnit.HOURS);
+
+    @BeforeEach
+    void clearDb() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    void lateEvents_areTrackedAndApplied() throws Exception {
+        LatenessResponse before = eventWatermarks.lateness();
+
+        eventService.processBatch(List.of(
+                validEvent("E-W1", "M-W1", base.plusMinutes(30), 1),
+                validEvent("E-W2", "M-W1", base.plusMinutes(50), 2)));
+        QueryStatsResponse cached = eventService.getStats("M-W1", base.minusHours(6), base.plusHours(1));
+        assertEquals(2, cached.getEventsCount());
+
+        // 30s behind: within the allowed lateness; 2h50m behind in a closed hour; 40m behind in the watermark's hour
+        eventService.processBatch(List.of(
+                validEvent("E-W3", "M-W1", base.plusMinutes(49).plusSeconds(30), 1),
+                validEvent("E-W4", "M-W1", base.minusHours(2), 4),
+                validEvent("E-W5", "M-W1", base.plusMinutes(10), 0)));
+
+        WatermarkResponse mark = eventWatermarks.watermarks(List.of("M-W1", "M-W-NONE")).get(0);
+        assertEquals(base.plusMinutes(50), mark.getWatermark());
+        assertEquals(5, mark.getEvents());
+        assertEquals(2, mark.getLateEvents());
+        assertEquals(2 * 3600 + 50 * 60, mark.getMaxLatenessSeconds());
+        assertEquals(1, mark.getRevisedBuckets());
+
+        // a receivedTime based update moves E-W1 into an earlier, closed hour
+        Thread.sleep(10);
+        eventService.processBatch(List.of(validEvent("E-W1", "M-W1", base.minusHours(5), 3)));
+
+        mark = eventWatermarks.watermarks(List.of("M-W1")).get(0);
+        assertEquals(base.plusMinutes(50), mark.getWatermark());
+        assertEquals(6, mark.getEvents());
+        assertEquals(3, mark.getLateEvents());
+        assertEquals(2, mark.getRevisedBuckets());
+        assertEquals(1, eventWatermarks.watermarks(List.of("M-W1", "M-W-NONE")).size());
+
+        // the cached window saw every delta
+        QueryStatsResponse stats = eventService.getStats("M-W1", base.minusHours(6), base.plusHours(1));
+        assertEquals(5, stats.getEventsCount());
+        assertEquals(10, stats.getDefectsCount());
+        assertEquals(1, eventService.getStats("M-W1", base.minusHours(5), base.minusHours(4)).getEventsCount());
+        assertEquals(0, eventService.getStats("M-W1", base.plusMinutes(30), base.plusMinutes(31)).getEventsCount());
+
+        LatenessResponse after = eventWatermarks.lateness();
+        assertEquals(6, after.getEvents() - before.getEvents());
+        assertEquals(3, after.getLateEvents() - before.getLateEvents());
+        assertEquals(2, after.getRevisedBuckets() - before.getRevisedBuckets());
+        Map<String, Long> expected = Map.of("0s", 2L, "1m", 1L, "1h", 1L, "1d", 2L, "7d", 0L, "older", 0L);
+        expected.forEach((bound, count) ->
+                assertEquals(count, after.getDistribution().get(bound) - before.getDistribution().get(bound), bound));
+        assertTrue(after.getAllowedLatenessSeconds() > 30);
+
+        // a restart seeds the watermark from the latest rollup bucket and its hour of events
+        eventWatermarks.afterSingletonsInstantiated();
+        mark = eventWatermarks.watermarks(List.of("M-W1")).get(0);
+        assertEquals(base.plusMinutes(50), mark.getWatermark());
+        assertEquals(0, mark.getEvents());
+    }
+
+    private EventRequestDTO validEvent(String id, String machineId, LocalDateTime eventTime, int defects) {
+        EventRequestDTO dto = new EventRequestDTO();
+        dto.setEventId(id);
+        dto.setMachineId(machineId);
+        dto.setEventTime(eventTime);
+        dto.setDurationMs(1000);
+        dto.setDefectCount(defects);
+        return dto;
+    }
+}
@@ -0,0 +1,151 @@
+package com.factory.buyogobackend;
+
+import com.factory.buyogobackend.dto.EventRequestDTO;
+import com.factory.buyogobackend.repository.EventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//  TEST 9: NDJSON streaming ingestion → same counts as a JSON batch, also for ids repeated across chunks
+
+@SpringBootTest(properties = "events.ingest.stream-chunk-size=2")
+@AutoConfigureMockMvc
+public class Test9 {
+
+    @Autowired
+    private MockMvc mockMvc ;
+    @Autowired
+    private ObjectMapper objectMapper ;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @BeforeEach
+    void clearDb() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    void ndjsonBatch_isIngestedInChunks() throws Exception {
+        LocalDateTime eventTime = LocalDateTime.now().minusMinutes(5);
+
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            body.append(objectMapper.writeValueAsString(validEvent("E-S" + i, eventTime))).append('\n');
+        }
+        EventRequestDTO bad = validEvent("E-S-BAD", eventTime);
+        bad.setDurationMs(-1);
+        body.append(objectMapper.writeValueAsString(bad)).append('\n');
+
+        mockMvc.perform(post("/events/batch")
+                        .contentType("application/x-ndjson")
+                        .content(body.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(5))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.rejections[0].reason").value("INVALID_DURATION"));
+
+        assertThat(eventRepository.count()).isEqualTo(5);
+    }
+
+    @Test
+    void idRepeatedAcrossChunks_isCountedLikeOneJsonBatch() throws Exception {
+        LocalDateTime eventTime = LocalDateTime.now().minusMinutes(5);
+
+        for (String prefix : List.of("J-", "S-")) {
+            EventRequestDTO stored = validEvent(prefix + "D", eventTime);
+            postJson(List.of(stored));
+        }
+
+        // chunks of 2: [A(1), B] [A(2), D(2)] [A(1), D(1)]; D(1) is the payload stored before
+        for (String prefix : List.of("J-", "S-")) {
+            List<EventRequestDTO> events = List.of(
+                    withDefects(prefix + "A", eventTime, 1), validEvent(prefix + "B", eventTime),
+                    withDefects(prefix + "A", eventTime, 2), withDefects(prefix + "D", eventTime, 2),
+                    withDefects(prefix + "A", eventTime, 1), withDefects(prefix + "D", eventTime, 1));
+
+            if (prefix.equals("J-")) {
+                postJson(events)
+                        .andExpect(jsonPath("$.accepted").value(2))
+                        .andExpect(jsonPath("$.deduped").value(1))
+                        .andExpect(jsonPath("$.updated").value(0));
+                continue;
+            }
+            StringBuilder body = new StringBuilder();
+            for (EventRequestDTO dto : events) body.append(objectMapper.writeValueAsString(dto)).append('\n');
+            mockMvc.perform(post("/events/batch")
+                            .contentType("application/x-ndjson")
+                            .content(body.toString()))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.accepted").value(2))
+                    .andExpect(jsonPath("$.deduped").value(1))
+                    .andExpect(jsonPath("$.updated").value(0));
+        }
+        assertThat(eventRepository.findById("S-A").orElseThrow().getDefectCount()).isEqualTo(1);
+    }
+
+    @Test
+    void malformedLine_returnsCountsOfCommittedChunks() throws Exception {
+        LocalDateTime eventTime = LocalDateTime.now().minusMinutes(5);
+
+        String body = objectMapper.writeValueAsString(validEvent("E-P1", eventTime)) + '\n'
+                + objectMapper.writeValueAsString(validEvent("E-P2", eventTime)) + '\n'
+                + "{\"eventId\": \n";
+
+        mockMvc.perform(post("/events/batch")
+                        .contentType("application/x-ndjson")
+                        .content(body))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.accepted").value(2));
+
+        assertThat(eventRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    void bodyMalformedFromTheFirstToken_isABadRequest() throws Exception {
+        mockMvc.perform(post("/events/batch")
+                        .contentType("application/x-ndjson")
+                        .content("}{\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.accepted").value(0));
+
+        assertThat(eventRepository.count()).isZero();
+    }
+
+    private ResultActions postJson(List<EventRequestDTO> events) throws Exception {
+        return mockMvc.perform(post("/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(events)))
+                .andExpect(status().isOk());
+    }
+
+    private EventRequestDTO withDefects(String id, LocalDateTime eventTime, int defects) {
+        EventRequestDTO dto = validEvent(id, eventTime);
+        dto.setDefectCount(defects);
+        return dto;
+    }
+
+    private EventRequestDTO validEvent(String id, LocalDateTime eventTime) {
+        EventRequestDTO dto = new EventRequestDTO();
+        dto.setEventId(id);
+        dto.setMachineId("M-001");
+        dto.setEventTime(eventTime);
+        dto.setDurationMs(1000);
+        dto.setDefectCount(1);
+        return dto;
+    }
+}